@@ -0,0 +1,185 @@
+package hudson.plugins.grinder;
+
+import java.io.PrintStream;
+import java.util.LinkedList;
+
+/**
+ * Limits how much Grinder result processing runs at the same time on the controller.
+ * <p>
+ * A publish needs one of a fixed number of slots, and a share of a memory budget estimated from
+ * the logs it reads. Publishes are admitted strictly in arrival order, so a burst of finishing
+ * load tests is processed a few at a time instead of all at once. A single publish larger than
+ * the whole budget is admitted alone.
+ * <p>
+ * The limits may be changed while publishes are running or waiting; publishes already admitted
+ * keep their share and count against the new limits until they release it.
+ */
+public class AdmissionControl {
+   private static final int KB = 1024;
+
+   private int maxConcurrent;
+   private long memoryBudgetKb;
+
+   /** Tickets of the publishes waiting to start, in arrival order. */
+   private final LinkedList<Object> queue = new LinkedList<Object>();
+   private int running;
+   private long memoryUsedKb;
+
+   private long admitted;
+   private long totalWaitMillis;
+   private long maxWaitMillis;
+
+   /**
+    * @param maxConcurrent  Maximum number of publishes processed at the same time.
+    * @param memoryBudgetMb Memory in megabytes that publishes processed at the same time may use together.
+    */
+   public AdmissionControl(int maxConcurrent, int memoryBudgetMb) {
+      resize(maxConcurrent, memoryBudgetMb);
+   }
+
+   /**
+    * Change the limits, keeping the publishes already admitted or waiting and the statistics.
+    *
+    * @param maxConcurrent  Maximum number of publishes processed at the same time.
+    * @param memoryBudgetMb Memory in megabytes that publishes processed at the same time may use together.
+    */
+   public synchronized void resize(int maxConcurrent, int memoryBudgetMb) {
+      if (maxConcurrent < 1 || memoryBudgetMb < 1) {
+         throw new IllegalArgumentException("Limits must be positive: " + maxConcurrent + ", " + memoryBudgetMb);
+      }
+      this.maxConcurrent = maxConcurrent;
+      this.memoryBudgetKb = (long) memoryBudgetMb * KB;
+      notifyAll();
+   }
+
+   /**
+    * Wait until the publish may start.
+    *
+    * @param estimatedBytes Estimated memory needed by the publish.
+    * @param logger         Logger to report waiting to.
+    * @return The permit, to be released when the publish is done.
+    * @throws InterruptedException Thrown if the build is aborted while waiting.
+    */
+   public Permit acquire(long estimatedBytes, PrintStream logger) throws InterruptedException {
+      long kb = Math.max(1, estimatedBytes / KB);
+      long start = System.currentTimeMillis();
+      Object ticket = new Object();
+
+      int ahead;
+      synchronized (this) {
+         queue.addLast(ticket);
+         if (isAdmissible(ticket, kb)) {
+            return admit(ticket, kb, start);
+         }
+         ahead = queue.size() - 1;
+      }
+      logger.println("Waiting for Grinder result processing (" + ahead + " ahead, "
+         + Math.max(1, kb / KB) + " MB needed)");
+
+      Permit permit;
+      synchronized (this) {
+         try {
+            while (!isAdmissible(ticket, kb)) {
+               wait();
+            }
+         } catch (InterruptedException e) {
+            queue.remove(ticket);
+            notifyAll();
+            throw e;
+         }
+         permit = admit(ticket, kb, start);
+      }
+      logger.println("Waited " + (System.currentTimeMillis() - start) + " ms for Grinder result processing");
+      return permit;
+   }
+
+   /**
+    * A publish may start when it is first in line and both a slot and its memory are free. Its
+    * memory is clamped to the current budget, so it is admitted alone if it needs more.
+    */
+   private boolean isAdmissible(Object ticket, long kb) {
+      return queue.getFirst() == ticket
+         && running < maxConcurrent
+         && memoryUsedKb + Math.min(kb, memoryBudgetKb) <= memoryBudgetKb;
+   }
+
+   private Permit admit(Object ticket, long kb, long start) {
+      queue.removeFirst();
+      long granted = Math.min(kb, memoryBudgetKb);
+      running++;
+      memoryUsedKb += granted;
+
+      long wait = System.currentTimeMillis() - start;
+      admitted++;
+      totalWaitMillis += wait;
+      maxWaitMillis = Math.max(maxWaitMillis, wait);
+
+      // the next in line may fit as well
+      notifyAll();
+      return new Permit(granted);
+   }
+
+   private synchronized void release(long kb) {
+      running--;
+      memoryUsedKb -= kb;
+      notifyAll();
+   }
+
+   public synchronized int getMaxConcurrent() {
+      return maxConcurrent;
+   }
+
+   public synchronized int getMemoryBudgetMb() {
+      return (int) (memoryBudgetKb / KB);
+   }
+
+   /**
+    * @return Number of publishes currently waiting to start.
+    */
+   public synchronized int getWaiting() {
+      return queue.size();
+   }
+
+   /**
+    * @return Number of publishes currently being processed.
+    */
+   public synchronized int getRunning() {
+      return running;
+   }
+
+   /**
+    * @return Number of publishes admitted since startup.
+    */
+   public synchronized long getAdmitted() {
+      return admitted;
+   }
+
+   public synchronized long getMeanWaitMillis() {
+      return admitted == 0 ? 0 : totalWaitMillis / admitted;
+   }
+
+   public synchronized long getMaxWaitMillis() {
+      return maxWaitMillis;
+   }
+
+   /**
+    * Admission of one publish, holding its slot and memory until released.
+    */
+   public class Permit {
+      private final long kb;
+      private boolean released;
+
+      Permit(long kb) {
+         this.kb = kb;
+      }
+
+      public void release() {
+         synchronized (AdmissionControl.this) {
+            if (!released) {
+               released = true;
+               AdmissionControl.this.release(kb);
+            }
+         }
+      }
+   }
+}
@@ -0,0 +1,110 @@
+package hudson.plugins.grinder;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Result;
+
+import java.util.List;
+
+/**
+ * Model class holding the Grinder results of one build that are needed for trends, so they can be
+ * read from the {@link GrinderIndex} without loading the build.
+ */
+public class BuildSummary {
+   private final int number;
+   private final String id;
+   private final long timestamp;
+   private final boolean successful;
+   private final Test totals;
+   private final String[] testIds;
+   private final double[] meanTimes;
+   private final double[] tps;
+   private final LatencyHistogram totalLatencies;
+
+   public BuildSummary(AbstractBuild<?, ?> build, GrinderBuildAction action) {
+      this(build.getNumber(), build.getId(), build.getTimeInMillis(), successful(build.getResult()),
+         action.getTotals(), action.getTests(), action.getLatencies().get(Test.TOTALS));
+   }
+
+   BuildSummary(int number, String id, long timestamp, boolean successful, Test totals, List<Test> tests,
+                LatencyHistogram totalLatencies) {
+      this.number = number;
+      this.id = id;
+      this.timestamp = timestamp;
+      this.successful = successful;
+      this.totals = totals;
+      this.totalLatencies = totalLatencies;
+
+      testIds = new String[tests.size()];
+      meanTimes = new double[tests.size()];
+      tps = new double[tests.size()];
+      for (int i = 0; i < testIds.length; i++) {
+         Test test = tests.get(i);
+         testIds[i] = test.getId();
+         meanTimes[i] = toDouble(test.getMeanTime());
+         tps[i] = toDouble(test.getTps());
+      }
+   }
+
+   private static boolean successful(Result result) {
+      return result != null && result.isBetterOrEqualTo(Result.SUCCESS);
+   }
+
+   private static double toDouble(Number value) {
+      return value != null ? value.doubleValue() : 0.0;
+   }
+
+   public int getNumber() {
+      return number;
+   }
+
+   /**
+    * @return The ID of the build, naming its directory within the build directory of the project.
+    */
+   public String getId() {
+      return id;
+   }
+
+   public long getTimestamp() {
+      return timestamp;
+   }
+
+   /**
+    * @return Whether the build completed successfully, the only builds included in trends.
+    */
+   public boolean isSuccessful() {
+      return successful;
+   }
+
+   public Test getTotals() {
+      return totals;
+   }
+
+   /**
+    * @return The IDs of the tests of the build, in report order.
+    */
+   public String[] getTestIds() {
+      return testIds;
+   }
+
+   /**
+    * @return The mean test time of each test, in the order of {@link #getTestIds()}.
+    */
+   public double[] getMeanTimes() {
+      return meanTimes;
+   }
+
+   /**
+    * @return The TPS of each test, in the order of {@link #getTestIds()}.
+    */
+   public double[] getTps() {
+      return tps;
+   }
+
+   /**
+    * @return Test time sketch of all tests together, or null if the build had no data logs. The
+    *         sketches of the single tests are stored next to the build.
+    */
+   public LatencyHistogram getTotalLatencies() {
+      return totalLatencies;
+   }
+}
@@ -0,0 +1,201 @@
+package hudson.plugins.grinder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Precompiled layout of the statistics table in a Grinder out log file.
+ * <p>
+ * The plan is built once from the multi-line table header, mapping each column to a metric and a
+ * parse function. Rows are then decoded column by column without probing the values, so custom
+ * statistics configured in <code>grinder.properties</code> are kept as extra metrics instead of
+ * shifting the known ones.
+ */
+public class ColumnPlan {
+   private static final String FIRST_COLUMN = "Tests";
+   private static final String SECOND_COLUMN = "Errors";
+   private static final Pattern PATTERN_VALUE = Pattern.compile("\\S+(?: \\S+)*");
+   private static final Pattern PATTERN_WHITESPACE = Pattern.compile("\\s+");
+   private static final Pattern PATTERN_DIGIT = Pattern.compile("\\d");
+
+   private static final Map<String, Column> KNOWN_COLUMNS = new HashMap<String, Column>();
+
+   static {
+      known("Tests", Test.TEST_COUNT, Parser.INTEGER);
+      known("Errors", Test.ERROR_COUNT, Parser.INTEGER);
+      known("Mean Test Time (ms)", Test.MEAN_TEST_TIME, Parser.DECIMAL);
+      known("Test Time Standard Deviation (ms)", Test.TEST_TIME_STANDARD_DEVIATION, Parser.DECIMAL);
+      known("TPS", Test.TPS, Parser.DECIMAL);
+      known("Mean response length", Test.MEAN_RESPONSE_LENGTH, Parser.DECIMAL);
+      known("Response bytes per second", Test.RESPONSE_BYTES_PER_SECOND, Parser.DECIMAL);
+      known("Response errors", Test.RESPONSE_ERROR_COUNT, Parser.INTEGER);
+      known("Mean time to resolve host", Test.RESOLVE_HOST_MEAN_TIME, Parser.DECIMAL);
+      known("Mean time to establish connection", Test.ESTABLISH_CONNECTION_MEAN_TIME, Parser.DECIMAL);
+      known("Mean time to first byte", Test.FIRST_BYTE_MEAN_TIME, Parser.DECIMAL);
+   }
+
+   private final Column[] columns;
+   private final List<String> extraMetrics;
+
+   private ColumnPlan(Column[] columns) {
+      this.columns = columns;
+      List<String> extras = new ArrayList<String>();
+      for (Column column : columns) {
+         if (column.extra) {
+            extras.add(column.metric);
+         }
+      }
+      this.extraMetrics = Collections.unmodifiableList(extras);
+   }
+
+   /**
+    * Build the plan from the header lines of the statistics table. Columns have a fixed width,
+    * given by the distance between the first two column labels.
+    *
+    * @param headerLines The header lines, the first one holding the first word of every label.
+    * @return The column plan.
+    * @throws GrinderParseException Thrown if the header is not a Grinder statistics header.
+    */
+   public static ColumnPlan parse(List<String> headerLines) {
+      if (headerLines.isEmpty()) {
+         throw new GrinderParseException("Missing statistics header");
+      }
+      String first = headerLines.get(0);
+      int offset = first.indexOf(FIRST_COLUMN);
+      int width = first.indexOf(SECOND_COLUMN, offset) - offset;
+      if (offset < 0 || width <= 0) {
+         throw new GrinderParseException("Unexpected statistics header: " + first);
+      }
+
+      int length = 0;
+      for (String line : headerLines) {
+         length = Math.max(length, line.length());
+      }
+
+      List<Column> columns = new ArrayList<Column>();
+      for (int start = offset; start < length; start += width) {
+         StringBuilder label = new StringBuilder();
+         for (String line : headerLines) {
+            if (start < line.length()) {
+               String part = line.substring(start, Math.min(start + width, line.length())).trim();
+               if (part.length() > 0) {
+                  label.append(label.length() > 0 ? " " : "").append(part);
+               }
+            }
+         }
+         if (label.length() == 0) {
+            break;
+         }
+         columns.add(column(label.toString()));
+      }
+      return new ColumnPlan(columns.toArray(new Column[columns.size()]));
+   }
+
+   /**
+    * Decode one row of the statistics table.
+    *
+    * @param row      The row, starting with the test ID.
+    * @param isTotals Whether this is the totals row, which has no test name.
+    * @return The test.
+    * @throws GrinderParseException Thrown if the row does not match the plan.
+    */
+   public Test decode(String row, boolean isTotals) {
+      Matcher matcher = PATTERN_VALUE.matcher(row);
+      String id = next(matcher, row, "ID");
+      Map<String, Number> values = new HashMap<String, Number>();
+      Map<String, Number> extraValues = new LinkedHashMap<String, Number>();
+      for (Column column : columns) {
+         Number value = column.parser.parse(next(matcher, row, column.metric));
+         (column.extra ? extraValues : values).put(column.metric, value);
+      }
+      String name = isTotals ? "" : row.substring(matcher.end()).trim().replaceAll("\"", "");
+      return new Test(id, name, values, extraValues);
+   }
+
+   /**
+    * @return The labels of the columns not known to the plugin, in column order.
+    */
+   public List<String> getExtraMetrics() {
+      return extraMetrics;
+   }
+
+   private static String next(Matcher matcher, String row, String metric) {
+      if (!matcher.find()) {
+         throw new GrinderParseException("Missing value for " + metric + " in: " + row);
+      }
+      return matcher.group();
+   }
+
+   private static void known(String label, String metric, Parser parser) {
+      KNOWN_COLUMNS.put(normalize(label), new Column(metric, parser, false));
+   }
+
+   private static Column column(String label) {
+      Column known = KNOWN_COLUMNS.get(normalize(label));
+      return known != null ? known : new Column(label, Parser.DECIMAL, true);
+   }
+
+   private static String normalize(String label) {
+      return PATTERN_WHITESPACE.matcher(label.trim()).replaceAll(" ").toLowerCase(Locale.ENGLISH);
+   }
+
+   private static final class Column {
+      private final String metric;
+      private final Parser parser;
+      private final boolean extra;
+
+      Column(String metric, Parser parser, boolean extra) {
+         this.metric = metric;
+         this.parser = parser;
+         this.extra = extra;
+      }
+   }
+
+   /**
+    * Parse functions for the column values. Grinder reports values it cannot compute with a
+    * placeholder such as '?' or '-', and marks composite test values with parentheses.
+    */
+   private enum Parser {
+      INTEGER {
+         Number parseValue(String value) {
+            return Integer.valueOf(value);
+         }
+
+         Number placeholder() {
+            return 0;
+         }
+      },
+      DECIMAL {
+         Number parseValue(String value) {
+            return Double.valueOf(value);
+         }
+
+         Number placeholder() {
+            return 0.0;
+         }
+      };
+
+      Number parse(String token) {
+         String value = token.replaceAll("[()]", "");
+         if (!PATTERN_DIGIT.matcher(value).find()) {
+            return placeholder();
+         }
+         try {
+            return parseValue(value);
+         } catch (NumberFormatException e) {
+            throw new GrinderParseException("Unexpected value: " + token, e);
+         }
+      }
+
+      abstract Number parseValue(String value);
+
+      abstract Number placeholder();
+   }
+}
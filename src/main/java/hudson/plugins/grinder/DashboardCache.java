@@ -0,0 +1,66 @@
+package hudson.plugins.grinder;
+
+import hudson.model.AbstractProject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Controller-wide cache of the dashboard rows of all jobs with Grinder results, keyed by the full
+ * name of the job.
+ * <p>
+ * Rows are updated from the {@link GrinderIndex} of a job when one of its builds completes or is
+ * deleted, and seeded by the {@link IndexMigration} at startup, so the dashboard never walks the
+ * builds of the jobs.
+ */
+public class DashboardCache {
+   private static final DashboardCache INSTANCE = new DashboardCache();
+
+   private final ConcurrentMap<String, JobSummary> jobs = new ConcurrentHashMap<String, JobSummary>();
+
+   public static DashboardCache getInstance() {
+      return INSTANCE;
+   }
+
+   /**
+    * Recompute the row of a job from its Grinder index.
+    */
+   public void update(AbstractProject<?, ?> project) {
+      update(project.getFullName(), project.getFullDisplayName(), project.getUrl(),
+         GrinderIndex.forProject(project).getSummaries());
+   }
+
+   /**
+    * Recompute the row of a job from its indexed builds, removing it if there are none.
+    *
+    * @param summaries The indexed builds of the job, newest first.
+    */
+   void update(String fullName, String displayName, String url, List<BuildSummary> summaries) {
+      if (summaries.isEmpty()) {
+         jobs.remove(fullName);
+      } else {
+         jobs.put(fullName, new JobSummary(fullName, displayName, url, summaries));
+      }
+   }
+
+   public void remove(String fullName) {
+      jobs.remove(fullName);
+   }
+
+   /**
+    * @return The cached rows, by job name.
+    */
+   public List<JobSummary> getJobs() {
+      List<JobSummary> list = new ArrayList<JobSummary>(jobs.values());
+      Collections.sort(list, new Comparator<JobSummary>() {
+         public int compare(JobSummary a, JobSummary b) {
+            return a.getFullName().compareToIgnoreCase(b.getFullName());
+         }
+      });
+      return list;
+   }
+}
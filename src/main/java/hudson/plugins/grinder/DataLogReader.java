@@ -0,0 +1,315 @@
+package hudson.plugins.grinder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Class used to read the per-sample records of Grinder data log files.
+ * <p>
+ * The files are streamed line by line and each sample is only counted in fixed-size aggregates,
+ * per test, per thread of each worker process and per time bucket, so memory use does not depend
+ * on the length of the run. Beyond {@link #MAX_TESTS} tests, samples only count in the totals.
+ */
+public class DataLogReader {
+   static final int MAX_TESTS = 10000;
+
+   /**
+    * Upper bound of the test time sketches kept while reading: a dense histogram of a few hundred
+    * buckets per test.
+    */
+   static final long MAX_RETAINED_BYTES = (MAX_TESTS + 1L) * 4096;
+
+   private static final String COLUMN_THREAD = "thread";
+   private static final String COLUMN_TEST = "test";
+   private static final String COLUMN_START_TIME = "start time";
+   private static final String COLUMN_RELATIVE_START_TIME = "milliseconds since start";
+   private static final String COLUMN_TEST_TIME = "test time";
+   private static final String COLUMN_ERRORS = "errors";
+
+   private final Map<Integer, LatencyHistogram.Accumulator> latenciesByTest = new TreeMap<Integer, LatencyHistogram.Accumulator>();
+   private final LatencyHistogram.Accumulator totalLatencies = new LatencyHistogram.Accumulator();
+   private final List<String> workerNames = new ArrayList<String>();
+   private final List<IntStatsMap> workerThreads = new ArrayList<IntStatsMap>();
+   private final Timeline timeline = new Timeline();
+   private long samples;
+   private long skipped;
+
+   private transient final PrintStream hudsonConsoleWriter;
+
+   /**
+    * Construct a reader for grinder data log files.
+    *
+    * @param logger Logger to print messages to.
+    */
+   public DataLogReader(PrintStream logger) {
+      hudsonConsoleWriter = logger;
+   }
+
+   /**
+    * Read one data log file. May be called once for each log file of a run.
+    *
+    * @param is The input stream giving the data log file.
+    * @throws GrinderParseException Thrown if the file is not a Grinder data log.
+    */
+   public void read(InputStream is) {
+      read(is, "Worker " + (workerNames.size() + 1));
+   }
+
+   /**
+    * Read the data log file of one worker process. May be called once for each worker of a run.
+    *
+    * @param is     The input stream giving the data log file.
+    * @param worker The name of the worker process that wrote the file.
+    * @throws GrinderParseException Thrown if the file is not a Grinder data log.
+    */
+   public void read(InputStream is, String worker) {
+      if (is == null) {
+         throw new GrinderParseException("Empty input stream");
+      }
+
+      try {
+         BufferedReader reader = new BufferedReader(new InputStreamReader(is));
+         String header = reader.readLine();
+         if (header == null) {
+            return;
+         }
+         String[] names = header.split(",");
+         int threadColumn = -1;
+         int testColumn = -1;
+         int startColumn = -1;
+         boolean absoluteStart = false;
+         int timeColumn = -1;
+         int errorsColumn = -1;
+         for (int i = 0; i < names.length; i++) {
+            String name = names[i].trim().toLowerCase(Locale.ENGLISH);
+            if (name.equals(COLUMN_THREAD)) {
+               threadColumn = i;
+            } else if (name.equals(COLUMN_TEST)) {
+               testColumn = i;
+            } else if (name.startsWith(COLUMN_START_TIME)) {
+               startColumn = i;
+               absoluteStart = true;
+            } else if (name.equals(COLUMN_RELATIVE_START_TIME)) {
+               startColumn = i;
+            } else if (name.equals(COLUMN_TEST_TIME)) {
+               timeColumn = i;
+            } else if (name.equals(COLUMN_ERRORS)) {
+               errorsColumn = i;
+            }
+         }
+         if (testColumn < 0 || timeColumn < 0 || errorsColumn < 0) {
+            throw new GrinderParseException("Unexpected data log header: " + header);
+         }
+
+         boolean perThread = threadColumn >= 0 && startColumn >= 0;
+         IntStatsMap threads = new IntStatsMap();
+         if (perThread) {
+            workerNames.add(worker);
+            workerThreads.add(threads);
+         }
+
+         int lastColumn = Math.max(testColumn, Math.max(timeColumn, errorsColumn));
+         if (startColumn >= 0) {
+            lastColumn = Math.max(lastColumn, startColumn);
+         }
+         if (perThread) {
+            lastColumn = Math.max(lastColumn, threadColumn);
+         }
+         long[] fields = new long[lastColumn + 1];
+         String line;
+         while ((line = reader.readLine()) != null) {
+            if (!parseFields(line, fields)) {
+               skipped++;
+               continue;
+            }
+            samples++;
+            long time = fields[timeColumn];
+            boolean error = fields[errorsColumn] != 0;
+            if (!error) {
+               totalLatencies.record(time);
+               LatencyHistogram.Accumulator testLatencies = latencies((int) fields[testColumn]);
+               if (testLatencies != null) {
+                  testLatencies.record(time);
+               }
+               if (absoluteStart) {
+                  timeline.add(Timeline.Series.TPS, fields[startColumn], 0);
+                  timeline.add(Timeline.Series.MEAN_TIME, fields[startColumn], time);
+               }
+            }
+            if (perThread) {
+               threads.record((int) fields[threadColumn], fields[startColumn], time, error);
+            }
+         }
+      } catch (IOException e) {
+         String errMsg = "Problem reading Grinder data log file";
+         hudsonConsoleWriter.println(errMsg + ": " + e.getMessage());
+         throw new GrinderParseException(errMsg, e);
+      }
+   }
+
+   /**
+    * @return The sketch of the test, or null if too many tests were seen already.
+    */
+   private LatencyHistogram.Accumulator latencies(int test) {
+      LatencyHistogram.Accumulator accumulator = latenciesByTest.get(test);
+      if (accumulator == null) {
+         if (latenciesByTest.size() >= MAX_TESTS) {
+            return null;
+         }
+         accumulator = new LatencyHistogram.Accumulator();
+         latenciesByTest.put(test, accumulator);
+      }
+      return accumulator;
+   }
+
+   /**
+    * Parse the leading comma separated integer fields of a line, without creating strings.
+    *
+    * @return Whether the line held enough integer fields.
+    */
+   static boolean parseFields(String line, long[] fields) {
+      int pos = 0;
+      int length = line.length();
+      for (int field = 0; field < fields.length; field++) {
+         while (pos < length && line.charAt(pos) == ' ') {
+            pos++;
+         }
+         boolean negative = pos < length && line.charAt(pos) == '-';
+         if (negative) {
+            pos++;
+         }
+         int start = pos;
+         long value = 0;
+         char c;
+         while (pos < length && (c = line.charAt(pos)) >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            pos++;
+         }
+         if (pos == start) {
+            return false;
+         }
+         fields[field] = negative ? -value : value;
+         while (pos < length && line.charAt(pos) == ' ') {
+            pos++;
+         }
+         if (pos < length && line.charAt(pos) == ',') {
+            pos++;
+         } else if (field < fields.length - 1) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * @return The test time sketches of the successful samples, for the totals first and then per test.
+    */
+   public Map<String, LatencyHistogram> getLatencies() {
+      Map<String, LatencyHistogram> latencies = new LinkedHashMap<String, LatencyHistogram>();
+      if (totalLatencies.getCount() > 0) {
+         latencies.put(Test.TOTALS, totalLatencies.toHistogram());
+      }
+      for (Map.Entry<Integer, LatencyHistogram.Accumulator> entry : latenciesByTest.entrySet()) {
+         latencies.put(Test.ID_PREFIX + entry.getKey(), entry.getValue().toHistogram());
+      }
+      return latencies;
+   }
+
+   /**
+    * @return The comparison of the workers read, or null if the data logs had no thread or start time column.
+    */
+   public SkewReport getSkewReport() {
+      if (workerNames.isEmpty()) {
+         return null;
+      }
+      List<WorkerStats> workers = new ArrayList<WorkerStats>();
+      for (int w = 0; w < workerNames.size(); w++) {
+         workers.add(workerStats(workerNames.get(w), workerThreads.get(w)));
+      }
+      return new SkewReport(workers);
+   }
+
+   private static WorkerStats workerStats(String name, IntStatsMap threads) {
+      long count = 0;
+      long errors = 0;
+      double timeSum = 0.0;
+      long firstStart = Long.MAX_VALUE;
+      long lastEnd = Long.MIN_VALUE;
+      double[] threadMeanTimes = new double[threads.size()];
+      int[] threadKeys = new int[threads.size()];
+      int active = 0;
+      for (int slot = 0; slot < threads.capacity(); slot++) {
+         if (!threads.isUsed(slot)) {
+            continue;
+         }
+         count += threads.count(slot);
+         errors += threads.errors(slot);
+         timeSum += threads.timeSum(slot);
+         firstStart = Math.min(firstStart, threads.firstStart(slot));
+         lastEnd = Math.max(lastEnd, threads.lastEnd(slot));
+         if (threads.count(slot) > 0) {
+            threadKeys[active] = threads.key(slot);
+            threadMeanTimes[active++] = threads.timeSum(slot) / threads.count(slot);
+         }
+      }
+      threadMeanTimes = Arrays.copyOf(threadMeanTimes, active);
+
+      double median = SkewReport.median(threadMeanTimes);
+      int slowThreads = 0;
+      int slowest = -1;
+      for (int i = 0; i < active; i++) {
+         if (threadMeanTimes[i] > median * SkewReport.OUTLIER_RATIO) {
+            slowThreads++;
+         }
+         if (slowest < 0 || threadMeanTimes[i] > threadMeanTimes[slowest]) {
+            slowest = i;
+         }
+      }
+
+      long duration = lastEnd - firstStart;
+      return new WorkerStats(
+         name,
+         threads.size(),
+         count,
+         errors,
+         duration > 0 ? count * 1000.0 / duration : 0.0,
+         count > 0 ? timeSum / count : 0.0,
+         SkewReport.cov(threadMeanTimes),
+         slowThreads,
+         slowest >= 0 ? threadKeys[slowest] : -1,
+         slowest >= 0 ? threadMeanTimes[slowest] : 0.0
+      );
+   }
+
+   /**
+    * @return The test rate and time over the run, empty if the data logs had no absolute start time.
+    *         Resource samples may be added to it to show them along.
+    */
+   public Timeline getTimeline() {
+      return timeline;
+   }
+
+   /**
+    * @return Number of samples read.
+    */
+   public long getSamples() {
+      return samples;
+   }
+
+   /**
+    * @return Number of lines skipped because they were not samples.
+    */
+   public long getSkipped() {
+      return skipped;
+   }
+}
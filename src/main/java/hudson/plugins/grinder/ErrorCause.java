@@ -0,0 +1,44 @@
+package hudson.plugins.grinder;
+
+/**
+ * Model class representing one normalized error signature and how often it occurred for a test.
+ */
+public class ErrorCause {
+   private final String testId;
+   private final String signature;
+   private final long count;
+   private final long error;
+
+   public ErrorCause(String testId, String signature, long count, long error) {
+      this.testId = testId;
+      this.signature = signature;
+      this.count = count;
+      this.error = error;
+   }
+
+   public String getTestId() {
+      return testId;
+   }
+
+   public String getSignature() {
+      return signature;
+   }
+
+   /**
+    * @return Approximate number of occurrences, never less than the real count.
+    */
+   public long getCount() {
+      return count;
+   }
+
+   /**
+    * @return Upper bound of how much the count may be overestimated.
+    */
+   public long getError() {
+      return error;
+   }
+
+   public boolean isExact() {
+      return error == 0;
+   }
+}
@@ -0,0 +1,230 @@
+package hudson.plugins.grinder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Class used to read Grinder error log files and rank the causes of the errors.
+ * <p>
+ * Each logged error is normalized into a signature made of the exception type, the top stack
+ * frames and the HTTP status code, and counted per test in a {@link SpaceSaving} structure. Memory
+ * use is therefore bounded by the number of tests, not by the number of errors in the logs.
+ */
+public class ErrorLogReader {
+   public static final String OTHER = "Other";
+
+   static final int COUNTERS_PER_TEST = 32;
+   static final int TOP_CAUSES = 10;
+   static final int MAX_TESTS = 1000;
+   static final int MAX_FRAMES = 3;
+   static final int MAX_MESSAGE_LENGTH = 160;
+
+   /**
+    * Upper bound of the counters kept while reading: a signature of a few hundred characters per
+    * counter of each test.
+    */
+   static final long MAX_RETAINED_BYTES = (MAX_TESTS + 2L) * COUNTERS_PER_TEST * 1024;
+
+   private static final Pattern PATTERN_ENTRY = Pattern.compile("\\(((?:thread|process) [^)]*)\\):\\s*(.*)$");
+   private static final Pattern PATTERN_TEST_ID = Pattern.compile("\\btest (\\d+)\\b");
+   private static final Pattern PATTERN_EXCEPTION =
+      Pattern.compile("\\b((?:[a-z_$][\\w$]*\\.)*[A-Z][\\w$]*(?:Exception|Error|Throwable))\\b");
+   private static final Pattern PATTERN_JAVA_FRAME = Pattern.compile("^\\s+at ([\\w$.<>]+)\\(");
+   private static final Pattern PATTERN_JYTHON_FRAME = Pattern.compile("^\\s+File \"(?:.*[/\\\\])?([^\"/\\\\]+)\", line \\d+, in (\\S+)");
+   private static final Pattern PATTERN_HTTP_STATUS =
+      Pattern.compile("(?:->|HTTP/\\d\\.\\d|[Ss]tatus(?: code)?[:=]?)\\s*([1-5]\\d\\d)\\b");
+   private static final Pattern PATTERN_QUERY = Pattern.compile("\\?[^\\s,]*");
+   private static final Pattern PATTERN_NUMBER = Pattern.compile("\\d+");
+   private static final Pattern PATTERN_QUOTED = Pattern.compile("'[^']*'|\"[^\"]*\"");
+
+   private final Map<String, SpaceSaving> causesByTest = new HashMap<String, SpaceSaving>();
+   private final SpaceSaving totals = new SpaceSaving(COUNTERS_PER_TEST);
+
+   private transient final PrintStream hudsonConsoleWriter;
+
+   /**
+    * Construct a reader for grinder error log files.
+    *
+    * @param logger Logger to print messages to.
+    */
+   public ErrorLogReader(PrintStream logger) {
+      hudsonConsoleWriter = logger;
+   }
+
+   /**
+    * Read one error log file. May be called once for each log file of a run.
+    *
+    * @param is The input stream giving the error log file.
+    * @throws GrinderParseException Thrown if the reading fails.
+    */
+   public void read(InputStream is) {
+      if (is == null) {
+         throw new GrinderParseException("Empty input stream");
+      }
+
+      try {
+         BufferedReader reader = new BufferedReader(new InputStreamReader(is));
+         Entry entry = null;
+         String line;
+         while ((line = reader.readLine()) != null) {
+            Matcher matcher = PATTERN_ENTRY.matcher(line);
+            if (matcher.find()) {
+               count(entry);
+               entry = new Entry(matcher.group(1), matcher.group(2));
+            } else if (entry != null) {
+               entry.addLine(line);
+            }
+         }
+         count(entry);
+      } catch (IOException e) {
+         String errMsg = "Problem reading Grinder error log file";
+         hudsonConsoleWriter.println(errMsg + ": " + e.getMessage());
+         throw new GrinderParseException(errMsg, e);
+      }
+   }
+
+   /**
+    * Get the top error causes, the overall ones first and then per test with the most failing
+    * tests first.
+    *
+    * @return The error causes, at most {@link #TOP_CAUSES} for each test.
+    */
+   public List<ErrorCause> getErrorCauses() {
+      List<ErrorCause> causes = new ArrayList<ErrorCause>();
+      if (totals.getTotal() == 0) {
+         return causes;
+      }
+      addCauses(causes, Test.TOTALS, totals);
+
+      List<Map.Entry<String, SpaceSaving>> tests = new ArrayList<Map.Entry<String, SpaceSaving>>(causesByTest.entrySet());
+      Collections.sort(tests, new Comparator<Map.Entry<String, SpaceSaving>>() {
+         public int compare(Map.Entry<String, SpaceSaving> e1, Map.Entry<String, SpaceSaving> e2) {
+            long t1 = e1.getValue().getTotal();
+            long t2 = e2.getValue().getTotal();
+            return t1 < t2 ? 1 : t1 > t2 ? -1 : e1.getKey().compareTo(e2.getKey());
+         }
+      });
+      for (Map.Entry<String, SpaceSaving> test : tests) {
+         addCauses(causes, test.getKey(), test.getValue());
+      }
+      return causes;
+   }
+
+   /**
+    * @return Total number of errors read.
+    */
+   public long getErrorCount() {
+      return totals.getTotal();
+   }
+
+   private void addCauses(List<ErrorCause> causes, String testId, SpaceSaving counters) {
+      for (SpaceSaving.Counter counter : counters.getTop(TOP_CAUSES)) {
+         causes.add(new ErrorCause(testId, counter.getKey(), counter.getCount(), counter.getError()));
+      }
+   }
+
+   private void count(Entry entry) {
+      if (entry == null) {
+         return;
+      }
+      String signature = entry.getSignature();
+      totals.offer(signature);
+
+      String testId = entry.testId;
+      SpaceSaving counters = causesByTest.get(testId);
+      if (counters == null) {
+         if (causesByTest.size() >= MAX_TESTS) {
+            testId = OTHER;
+            counters = causesByTest.get(testId);
+         }
+         if (counters == null) {
+            counters = new SpaceSaving(COUNTERS_PER_TEST);
+            causesByTest.put(testId, counters);
+         }
+      }
+      counters.offer(signature);
+   }
+
+   /**
+    * One error entry being read: the header line and the stack trace lines following it.
+    */
+   private static class Entry {
+      private final String testId;
+      private final String message;
+      private String type;
+      private String status;
+      private final List<String> frames = new ArrayList<String>(MAX_FRAMES);
+
+      Entry(String context, String message) {
+         Matcher matcher = PATTERN_TEST_ID.matcher(context);
+         this.testId = matcher.find() ? Test.ID_PREFIX + matcher.group(1) : OTHER;
+         this.message = message;
+         inspect(message);
+      }
+
+      void addLine(String line) {
+         if (frames.size() < MAX_FRAMES) {
+            Matcher matcher = PATTERN_JAVA_FRAME.matcher(line);
+            if (matcher.find()) {
+               frames.add(matcher.group(1));
+               return;
+            }
+            matcher = PATTERN_JYTHON_FRAME.matcher(line);
+            if (matcher.find()) {
+               frames.add(matcher.group(1) + ":" + matcher.group(2));
+               return;
+            }
+         }
+         inspect(line);
+      }
+
+      private void inspect(String text) {
+         if (type == null) {
+            Matcher matcher = PATTERN_EXCEPTION.matcher(text);
+            if (matcher.find()) {
+               type = matcher.group(1);
+            }
+         }
+         if (status == null) {
+            Matcher matcher = PATTERN_HTTP_STATUS.matcher(text);
+            if (matcher.find()) {
+               status = matcher.group(1);
+            }
+         }
+      }
+
+      String getSignature() {
+         StringBuilder signature = new StringBuilder();
+         if (type != null) {
+            signature.append(type);
+         } else {
+            signature.append(normalize(message));
+         }
+         for (String frame : frames) {
+            signature.append(" < ").append(frame);
+         }
+         if (status != null) {
+            signature.append(" [HTTP ").append(status).append(']');
+         }
+         return signature.toString();
+      }
+
+      private static String normalize(String message) {
+         String normalized = PATTERN_QUERY.matcher(message).replaceAll("");
+         normalized = PATTERN_QUOTED.matcher(normalized).replaceAll("'...'");
+         normalized = PATTERN_NUMBER.matcher(normalized).replaceAll("#").trim();
+         return normalized.length() > MAX_MESSAGE_LENGTH ? normalized.substring(0, MAX_MESSAGE_LENGTH) + "..." : normalized;
+      }
+   }
+}
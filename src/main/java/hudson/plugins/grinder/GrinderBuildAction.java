@@ -1,28 +1,44 @@
 package hudson.plugins.grinder;
 
+import hudson.XmlFile;
 import hudson.model.AbstractBuild;
+import hudson.model.Hudson;
 import hudson.util.ChartUtil;
 import hudson.util.ColorPalette;
-import hudson.util.DataSetBuilder;
 import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.AxisLocation;
 import org.jfree.chart.axis.CategoryAxis;
 import org.jfree.chart.axis.CategoryLabelPositions;
+import org.jfree.chart.axis.DateAxis;
 import org.jfree.chart.axis.NumberAxis;
 import org.jfree.chart.axis.ValueAxis;
 import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.plot.XYPlot;
 import org.jfree.chart.renderer.category.BarRenderer;
 import org.jfree.chart.renderer.category.CategoryItemRenderer;
 import org.jfree.chart.renderer.category.LineAndShapeRenderer;
 import org.jfree.chart.renderer.category.StatisticalBarRenderer;
+import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
+import org.jfree.data.category.DefaultCategoryDataset;
 import org.jfree.data.statistics.DefaultStatisticalCategoryDataset;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
 import java.awt.Color;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Action used for Grinder report on build level.
@@ -30,15 +46,46 @@ import java.util.List;
  * @author Eivind B Waaler
  */
 public class GrinderBuildAction extends AbstractGrinderAction {
+   static final String SORT_INDEX_FILE = "grinder-sort-index.xml";
+   static final String LATENCIES_FILE = "grinder-latencies.xml";
+   static final int DEFAULT_TOP_TESTS = 20;
+   static final int MAX_TOP_TESTS = 100;
+
+   private static final Logger LOGGER = Logger.getLogger(GrinderBuildAction.class.getName());
+
    private final AbstractBuild<?, ?> build;
    private Test totals;
    private List<Test> tests;
+   private List<ErrorCause> errorCauses;
+   private SkewReport skewReport;
+   private Timeline timeline;
+
+   /**
+    * Test time sketches, stored in their own file so trends can read them without loading the build.
+    */
+   private transient Map<String, LatencyHistogram> latencies;
+
+   private transient TestSortIndex sortIndex;
 
    public GrinderBuildAction(AbstractBuild<?, ?> build, InputStream is, PrintStream logger) {
+      this(build, is, new ErrorLogReader(logger), new DataLogReader(logger), logger);
+   }
+
+   /**
+    * @param errorLogs Reader the error logs of the run have been read with.
+    * @param dataLogs  Reader the data logs of the run, and any resource logs, have been read with.
+    */
+   public GrinderBuildAction(AbstractBuild<?, ?> build, InputStream is, ErrorLogReader errorLogs, DataLogReader dataLogs,
+                             PrintStream logger) {
       this.build = build;
       ResultReader rs = new ResultReader(is, logger);
       totals = rs.getTotals();
       tests = rs.getTests();
+      errorCauses = errorLogs.getErrorCauses();
+      latencies = dataLogs.getLatencies();
+      skewReport = dataLogs.getSkewReport();
+      timeline = dataLogs.getTimeline().isEmpty() ? null : dataLogs.getTimeline();
+      sortIndex = new TestSortIndex(tests, totals.getExtraMetrics());
       logger.println("Created Grinder results");
    }
 
@@ -54,21 +101,216 @@ public class GrinderBuildAction extends AbstractGrinderAction {
       return tests;
    }
 
+   /**
+    * @return The most frequent error causes from the error logs, empty for builds made before they were read.
+    */
+   public List<ErrorCause> getErrorCauses() {
+      return errorCauses != null ? errorCauses : Collections.<ErrorCause>emptyList();
+   }
+
+   /**
+    * @return Test time sketches from the data logs keyed by test ID, empty for builds made before they were read.
+    */
+   public synchronized Map<String, LatencyHistogram> getLatencies() {
+      if (latencies == null) {
+         latencies = loadLatencies(build.getRootDir());
+      }
+      return latencies;
+   }
+
+   /**
+    * Read the test time sketches stored next to a build, without loading the build.
+    *
+    * @param buildDir The directory of the build.
+    * @return The sketches keyed by test ID, empty if none were stored.
+    */
+   @SuppressWarnings("unchecked")
+   static Map<String, LatencyHistogram> loadLatencies(File buildDir) {
+      XmlFile file = new XmlFile(Hudson.XSTREAM, new File(buildDir, LATENCIES_FILE));
+      if (file.exists()) {
+         try {
+            return (Map<String, LatencyHistogram>) file.read();
+         } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to load " + file, e);
+         }
+      }
+      return Collections.emptyMap();
+   }
+
+   /**
+    * Store the test time sketches next to the build. Called by the publisher.
+    */
+   public synchronized void saveLatencies() {
+      if (getLatencies().isEmpty()) {
+         return;
+      }
+      XmlFile file = new XmlFile(Hudson.XSTREAM, new File(build.getRootDir(), LATENCIES_FILE));
+      try {
+         file.write(latencies);
+      } catch (IOException e) {
+         LOGGER.log(Level.WARNING, "Failed to save " + file, e);
+      }
+   }
+
+   /**
+    * @return The comparison of the worker processes of the run, or null if not available.
+    */
+   public SkewReport getSkewReport() {
+      return skewReport;
+   }
+
+   /**
+    * @return The test rate and time over the run with any resource samples, or null if not available.
+    */
+   public Timeline getTimeline() {
+      return timeline;
+   }
+
+   /**
+    * Get the sort index of the tests, stored next to the build by the publisher. Builds made before
+    * it was stored compute it in memory on first use.
+    */
+   public synchronized TestSortIndex getSortIndex() {
+      if (sortIndex == null) {
+         XmlFile file = getSortIndexFile();
+         if (file.exists()) {
+            try {
+               sortIndex = (TestSortIndex) file.read();
+            } catch (IOException e) {
+               LOGGER.log(Level.WARNING, "Failed to load " + file + ", it will be computed", e);
+            }
+         }
+         if (sortIndex == null || sortIndex.getTestCount() != tests.size()) {
+            sortIndex = new TestSortIndex(tests, totals.getExtraMetrics());
+         }
+      }
+      return sortIndex;
+   }
+
+   /**
+    * Store the sort index next to the build, so it is read rather than computed when the build is
+    * loaded again. Called by the publisher, never while serving a page.
+    */
+   public synchronized void saveSortIndex() {
+      XmlFile file = getSortIndexFile();
+      try {
+         file.write(getSortIndex());
+      } catch (IOException e) {
+         LOGGER.log(Level.WARNING, "Failed to save " + file, e);
+      }
+   }
+
+   private XmlFile getSortIndexFile() {
+      return new XmlFile(Hudson.XSTREAM, new File(build.getRootDir(), SORT_INDEX_FILE));
+   }
+
+   /**
+    * @return The page of the test table requested with the sort, order, filter, page and size parameters.
+    */
+   public TestPage getTestPage() {
+      StaplerRequest request = Stapler.getCurrentRequest();
+      TestPage page = new TestPage(
+         tests,
+         getSortIndex(),
+         request.getParameter("sort"),
+         TestPage.ORDER_DESCENDING.equals(request.getParameter("order")),
+         request.getParameter("filter"),
+         readInt(request, "page", 1),
+         readInt(request, "size", TestPage.DEFAULT_SIZE));
+      // the chart settings
+      page.keepParameter("top", request.getParameter("top"));
+      page.keepParameter("metric", request.getParameter("metric"));
+      return page;
+   }
+
+   /**
+    * @return The test time sketches of the totals and of the tests on the given page.
+    */
+   public Map<String, LatencyHistogram> getPageLatencies(TestPage page) {
+      Map<String, LatencyHistogram> pageLatencies = new LinkedHashMap<String, LatencyHistogram>();
+      Map<String, LatencyHistogram> latencies = getLatencies();
+      if (latencies.containsKey(Test.TOTALS)) {
+         pageLatencies.put(Test.TOTALS, latencies.get(Test.TOTALS));
+      }
+      for (Test test : page.getTests()) {
+         if (latencies.containsKey(test.getId())) {
+            pageLatencies.put(test.getId(), latencies.get(test.getId()));
+         }
+      }
+      return pageLatencies;
+   }
+
+   /**
+    * @return The statistics the tests can be sorted and charted by.
+    */
+   public List<String> getMetrics() {
+      return TestSortIndex.getMetrics(totals.getExtraMetrics());
+   }
+
+   /**
+    * @return The statistic to pick the charted tests by, as requested.
+    */
+   public String getGraphMetric() {
+      String metric = Stapler.getCurrentRequest().getParameter("metric");
+      return metric != null && getSortIndex().getOrder(metric) != null ? metric : Test.MEAN_TEST_TIME;
+   }
+
+   /**
+    * @return Number of tests to chart, as requested.
+    */
+   public int getGraphTop() {
+      return Math.min(MAX_TOP_TESTS, readInt(Stapler.getCurrentRequest(), "top", DEFAULT_TOP_TESTS));
+   }
+
+   private static int readInt(StaplerRequest request, String name, int defaultValue) {
+      try {
+         return Math.max(1, Integer.parseInt(request.getParameter(name)));
+      } catch (NumberFormatException e) {
+         return defaultValue;
+      }
+   }
+
+   /**
+    * @return The tests with the highest values of the statistic, highest first.
+    */
+   private List<Test> getTopTests(String metric, int top) {
+      int[] order = getSortIndex().getOrder(metric);
+      List<Test> topTests = new ArrayList<Test>();
+      for (int i = order.length - 1; i >= 0 && topTests.size() < top; i--) {
+         topTests.add(tests.get(order[i]));
+      }
+      return topTests;
+   }
+
+   public void doTimelineGraph(StaplerRequest request, StaplerResponse response)
+      throws IOException {
+
+      if (timeline != null && shouldReloadGraph(request, response, build)) {
+         ChartUtil.generateGraph(request, response, createTimelineGraph(), 800, 300);
+      }
+   }
+
    public void doTestGraph(StaplerRequest request, StaplerResponse response)
       throws IOException {
 
       if (shouldReloadGraph(request, response, build)) {
-         ChartUtil.generateGraph(request, response, createTestGraph(), 800, 400);
+         String metric = getGraphMetric();
+         ChartUtil.generateGraph(request, response, createTestGraph(metric, getTopTests(metric, getGraphTop())), 800, 400);
       }
    }
 
-   private JFreeChart createTestGraph() {
+   /**
+    * Chart the test time and response length of the given tests only, as a category axis of
+    * thousands of tests is unreadable.
+    */
+   private JFreeChart createTestGraph(String metric, List<Test> tests) {
       DefaultStatisticalCategoryDataset timeDS = new DefaultStatisticalCategoryDataset();
-      DataSetBuilder<String, Comparable> lengthDS = new DataSetBuilder<String, Comparable>();
+      // in chart order, unlike DataSetBuilder which sorts the tests by ID
+      DefaultCategoryDataset lengthDS = new DefaultCategoryDataset();
 
       for (Test test : tests) {
          timeDS.add(test.getMeanTime(), test.getStdDev(), Test.MEAN_TEST_TIME, test.getId());
-         lengthDS.add(test.getMeanRespLength(), Test.MEAN_RESPONSE_LENGTH, test.getId());
+         lengthDS.addValue(test.getMeanRespLength(), Test.MEAN_RESPONSE_LENGTH, test.getId());
       }
 
       final CategoryAxis xAxis = new CategoryAxis("Test name");
@@ -95,11 +337,59 @@ public class GrinderBuildAction extends AbstractGrinderAction {
 
       final CategoryItemRenderer lengthRenderer = new LineAndShapeRenderer();
       plot.setRangeAxis(1, lengthAxis);
-      plot.setDataset(1, lengthDS.build());
+      plot.setDataset(1, lengthDS);
       plot.mapDatasetToRangeAxis(1, 1);
       plot.setRenderer(1, lengthRenderer);
 
-      JFreeChart chart = new JFreeChart("Test time", plot);
+      JFreeChart chart = new JFreeChart("Test time of the top " + tests.size() + " tests by " + metric, plot);
+      chart.setBackgroundPaint(Color.WHITE);
+
+      return chart;
+   }
+
+   /**
+    * Chart the series of the timeline over time, with one range axis per unit: transaction rates,
+    * times in ms and percentages.
+    */
+   private JFreeChart createTimelineGraph() {
+      final String[] axisLabels = {"Transactions per second", "Time (ms)", "Percent"};
+
+      final XYPlot plot = new XYPlot();
+      plot.setDomainAxis(new DateAxis("Time"));
+      plot.setBackgroundPaint(Color.WHITE);
+      plot.setOutlinePaint(null);
+      plot.setRangeGridlinesVisible(true);
+      plot.setRangeGridlinePaint(Color.black);
+
+      int index = 0;
+      for (int axis = 0; axis < axisLabels.length; axis++) {
+         XYSeriesCollection dataset = new XYSeriesCollection();
+         for (Timeline.Series series : Timeline.Series.values()) {
+            if (series.getAxis() != axis || !timeline.contains(series)) {
+               continue;
+            }
+            XYSeries points = new XYSeries(series.getLabel(), false, true);
+            for (int bucket = 0; bucket < timeline.getBucketCount(); bucket++) {
+               points.add(timeline.getStart() + bucket * timeline.getBucketMillis(), timeline.getValue(series, bucket));
+            }
+            dataset.addSeries(points);
+         }
+         if (dataset.getSeriesCount() == 0) {
+            continue;
+         }
+         NumberAxis rangeAxis = new NumberAxis(axisLabels[axis]);
+         if (axis == 2) {
+            rangeAxis.setRange(0.0, 100.0);
+         }
+         plot.setDataset(index, dataset);
+         plot.setRangeAxis(index, rangeAxis);
+         plot.setRangeAxisLocation(index, index == 0 ? AxisLocation.BOTTOM_OR_LEFT : AxisLocation.BOTTOM_OR_RIGHT);
+         plot.mapDatasetToRangeAxis(index, index);
+         plot.setRenderer(index, new XYLineAndShapeRenderer(true, false));
+         index++;
+      }
+
+      JFreeChart chart = new JFreeChart("Timeline", plot);
       chart.setBackgroundPaint(Color.WHITE);
 
       return chart;
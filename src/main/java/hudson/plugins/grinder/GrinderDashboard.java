@@ -0,0 +1,51 @@
+package hudson.plugins.grinder;
+
+import hudson.Extension;
+import hudson.model.Hudson;
+import hudson.model.Item;
+import hudson.model.Project;
+import hudson.model.RootAction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Jenkins-level dashboard listing the latest Grinder results of every job, served from the
+ * {@link DashboardCache}.
+ */
+@Extension
+public class GrinderDashboard implements RootAction {
+   static final String URL = "grinder-dashboard";
+   static final String DISPLAY_NAME = "Grinder dashboard";
+
+   public String getIconFileName() {
+      return GrinderPlugin.ICON_FILE_NAME;
+   }
+
+   public String getDisplayName() {
+      return DISPLAY_NAME;
+   }
+
+   public String getUrlName() {
+      return URL;
+   }
+
+   /**
+    * @return The rows of the jobs the current user can read that still publish Grinder results.
+    */
+   public List<JobSummary> getJobs() {
+      List<JobSummary> visible = new ArrayList<JobSummary>();
+      for (JobSummary job : DashboardCache.getInstance().getJobs()) {
+         Project project = Hudson.getInstance().getItemByFullName(job.getFullName(), Project.class);
+         if (project != null && project.hasPermission(Item.READ)
+            && project.getPublishersList().get(GrinderPublisher.class) != null) {
+            visible.add(job);
+         }
+      }
+      return visible;
+   }
+
+   public IndexMigration getMigration() {
+      return IndexMigration.getInstance();
+   }
+}
@@ -0,0 +1,170 @@
+package hudson.plugins.grinder;
+
+import hudson.XmlFile;
+import hudson.model.AbstractProject;
+import hudson.model.Hudson;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Per-project index of the Grinder results of its builds, stored next to the project configuration.
+ * <p>
+ * Trends and tables on project level are served from the index instead of loading every build.
+ * Builds are added when they complete, and builds made before the index existed are added by the
+ * {@link IndexMigration} at startup.
+ */
+public class GrinderIndex {
+   static final String FILE_NAME = "grinder-index.xml";
+
+   private static final Logger LOGGER = Logger.getLogger(GrinderIndex.class.getName());
+   private static final ConcurrentMap<File, GrinderIndex> INDEXES = new ConcurrentHashMap<File, GrinderIndex>();
+
+   private final TreeMap<Integer, BuildSummary> summaries = new TreeMap<Integer, BuildSummary>();
+   private boolean migrated;
+
+   private transient File file;
+   private transient boolean deleted;
+
+   /**
+    * Get the index of a project, loading it on first use.
+    *
+    * @param project The project.
+    * @return The index, empty if none was stored yet.
+    */
+   public static GrinderIndex forProject(AbstractProject<?, ?> project) {
+      File file = new File(project.getRootDir(), FILE_NAME);
+      GrinderIndex index = INDEXES.get(file);
+      if (index == null) {
+         synchronized (INDEXES) {
+            index = INDEXES.get(file);
+            if (index == null) {
+               index = load(file);
+               INDEXES.put(file, index);
+            }
+         }
+      }
+      return index;
+   }
+
+   /**
+    * Forget the index of a deleted project and delete its file, so a project created later under
+    * the same name starts with an empty index. Later saves of the forgotten index are ignored.
+    *
+    * @param rootDir The directory the project had.
+    */
+   static void delete(File rootDir) {
+      File file = new File(rootDir, FILE_NAME);
+      synchronized (INDEXES) {
+         GrinderIndex index = INDEXES.remove(file);
+         if (index != null) {
+            index.markDeleted();
+         }
+      }
+      if (file.exists() && !file.delete()) {
+         LOGGER.warning("Failed to delete " + file);
+      }
+   }
+
+   /**
+    * Move the index of a renamed project to its new directory, where the file was moved along with
+    * the project, so the index is not saved to the old directory any more.
+    *
+    * @param oldRootDir The directory the project had.
+    * @param newRootDir The directory the project has now.
+    */
+   static void rename(File oldRootDir, File newRootDir) {
+      File oldFile = new File(oldRootDir, FILE_NAME);
+      File newFile = new File(newRootDir, FILE_NAME);
+      synchronized (INDEXES) {
+         GrinderIndex index = INDEXES.remove(oldFile);
+         if (index != null) {
+            index.moveTo(newFile);
+            INDEXES.put(newFile, index);
+         }
+      }
+   }
+
+   static GrinderIndex load(File file) {
+      XmlFile xml = new XmlFile(Hudson.XSTREAM, file);
+      GrinderIndex index = null;
+      if (xml.exists()) {
+         try {
+            index = (GrinderIndex) xml.read();
+         } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to load " + file + ", it will be rebuilt", e);
+         }
+      }
+      if (index == null) {
+         index = new GrinderIndex();
+      }
+      index.file = file;
+      return index;
+   }
+
+   public synchronized void put(BuildSummary summary) {
+      summaries.put(summary.getNumber(), summary);
+   }
+
+   public synchronized void remove(int number) {
+      summaries.remove(number);
+   }
+
+   public synchronized boolean contains(int number) {
+      return summaries.containsKey(number);
+   }
+
+   /**
+    * @return The indexed builds, newest first.
+    */
+   public synchronized List<BuildSummary> getSummaries() {
+      List<BuildSummary> list = new ArrayList<BuildSummary>(summaries.values());
+      Collections.reverse(list);
+      return list;
+   }
+
+   /**
+    * @return The newest indexed build, or null if none.
+    */
+   public synchronized BuildSummary getLatest() {
+      return summaries.isEmpty() ? null : summaries.lastEntry().getValue();
+   }
+
+   /**
+    * @return Whether all builds made before the index existed have been added.
+    */
+   public synchronized boolean isMigrated() {
+      return migrated;
+   }
+
+   synchronized void setMigrated(boolean migrated) {
+      this.migrated = migrated;
+   }
+
+   private synchronized void markDeleted() {
+      deleted = true;
+   }
+
+   private synchronized void moveTo(File file) {
+      this.file = file;
+   }
+
+   public synchronized void save() {
+      if (deleted) {
+         return;
+      }
+      try {
+         new XmlFile(Hudson.XSTREAM, file).write(this);
+      } catch (IOException e) {
+         LOGGER.log(Level.WARNING, "Failed to save " + file, e);
+      }
+   }
+}
@@ -0,0 +1,33 @@
+package hudson.plugins.grinder;
+
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.Project;
+import hudson.model.listeners.ItemListener;
+
+import java.io.File;
+
+/**
+ * Keeps the {@link GrinderIndex} and the {@link DashboardCache} in step with deleted and renamed jobs.
+ */
+@Extension
+public class GrinderItemListener extends ItemListener {
+
+   @Override
+   public void onDeleted(Item item) {
+      GrinderIndex.delete(item.getRootDir());
+      DashboardCache.getInstance().remove(item.getFullName());
+   }
+
+   @Override
+   public void onRenamed(Item item, String oldName, String newName) {
+      File rootDir = item.getRootDir();
+      GrinderIndex.rename(new File(rootDir.getParentFile(), oldName), rootDir);
+
+      String parentName = item.getParent().getFullName();
+      DashboardCache.getInstance().remove(parentName.length() > 0 ? parentName + "/" + oldName : oldName);
+      if (item instanceof Project && ((Project) item).getPublishersList().get(GrinderPublisher.class) != null) {
+         DashboardCache.getInstance().update((Project) item);
+      }
+   }
+}
@@ -1,6 +1,8 @@
 package hudson.plugins.grinder;
 
 import hudson.Plugin;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
 
 /**
  * Entry point for the grinder plugin.
@@ -12,4 +14,13 @@ public class GrinderPlugin extends Plugin {
    static final String ICON_FILE_NAME = "graph.gif";
    static final String DISPLAY_NAME = "Grinder report";
    static final String URL = "grinder";
+
+   /**
+    * Once all jobs are loaded, start adding their existing builds to the Grinder index in the
+    * background.
+    */
+   @Initializer(after = InitMilestone.JOB_LOADED)
+   public static void startIndexMigration() {
+      IndexMigration.getInstance().start();
+   }
 }
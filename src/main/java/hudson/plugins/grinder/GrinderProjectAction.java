@@ -1,10 +1,7 @@
 package hudson.plugins.grinder;
 
-import hudson.model.AbstractBuild;
 import hudson.model.Project;
-import hudson.model.Result;
 import hudson.util.ChartUtil;
-import hudson.util.ChartUtil.NumberOnlyBuildLabel;
 import hudson.util.ColorPalette;
 import hudson.util.DataSetBuilder;
 import hudson.util.ShiftedCategoryAxis;
@@ -17,11 +14,17 @@ import org.jfree.chart.plot.CategoryPlot;
 import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.chart.renderer.category.CategoryItemRenderer;
 import org.jfree.ui.RectangleInsets;
+import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
 import java.awt.Color;
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Action used for Grinder report on project level.
@@ -29,6 +32,13 @@ import java.io.IOException;
  * @author Eivind B Waaler
  */
 public class GrinderProjectAction extends AbstractGrinderAction {
+   static final String WINDOW_IN_BUILDS = "builds";
+   static final String WINDOW_IN_DAYS = "days";
+   static final int DEFAULT_WINDOW = 7;
+   static final int MAX_PERCENTILE_BUILDS = 100;
+
+   private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+   private static final int[] PERCENTILES = {50, 90, 99};
 
    private final Project project;
 
@@ -44,6 +54,75 @@ public class GrinderProjectAction extends AbstractGrinderAction {
       return project.getBuildByNumber(number).getAction(GrinderBuildAction.class);
    }
 
+   /**
+    * @return The Grinder results of the builds of the project, newest first.
+    */
+   public List<BuildSummary> getSummaries() {
+      return GrinderIndex.forProject(project).getSummaries();
+   }
+
+   /**
+    * @return Whether builds made before the Grinder index existed are still being added to it.
+    */
+   public boolean isMigrating() {
+      return !IndexMigration.getInstance().isFinished() && !GrinderIndex.forProject(project).isMigrated();
+   }
+
+   public IndexMigration getMigration() {
+      return IndexMigration.getInstance();
+   }
+
+   /**
+    * @return The custom statistics reported by the last build with Grinder results.
+    */
+   public List<String> getExtraMetrics() {
+      BuildSummary latest = GrinderIndex.forProject(project).getLatest();
+      if (latest == null) {
+         return Collections.emptyList();
+      }
+      return latest.getTotals().getExtraMetrics();
+   }
+
+   /**
+    * @return The IDs of the tests with test time sketches in the last build with Grinder results.
+    */
+   public List<String> getLatencyTestIds() {
+      BuildSummary latest = GrinderIndex.forProject(project).getLatest();
+      if (latest == null || latest.getTotalLatencies() == null) {
+         return Collections.emptyList();
+      }
+      List<String> testIds = new ArrayList<String>();
+      testIds.add(Test.TOTALS);
+      testIds.addAll(Arrays.asList(latest.getTestIds()));
+      return testIds;
+   }
+
+   /**
+    * @return The test to show rolling percentiles for, as requested.
+    */
+   public String getPercentileTest() {
+      String test = Stapler.getCurrentRequest().getParameter("test");
+      return test != null ? test : Test.TOTALS;
+   }
+
+   /**
+    * @return The size of the rolling percentile window, as requested.
+    */
+   public int getPercentileWindow() {
+      try {
+         return Math.max(1, Integer.parseInt(Stapler.getCurrentRequest().getParameter("window")));
+      } catch (NumberFormatException e) {
+         return DEFAULT_WINDOW;
+      }
+   }
+
+   /**
+    * @return Whether the rolling percentile window is requested in builds rather than days.
+    */
+   public boolean isPercentileWindowInBuilds() {
+      return WINDOW_IN_BUILDS.equals(Stapler.getCurrentRequest().getParameter("unit"));
+   }
+
     public void doTpsGraph(StaplerRequest request, StaplerResponse response) throws IOException {
         if (shouldReloadGraph(request, response)) {
             ChartUtil.generateGraph(request, response, createTpsGraph(), 800, 150);
@@ -74,6 +153,15 @@ public class GrinderProjectAction extends AbstractGrinderAction {
       }
    }
 
+   public void doPercentileGraph(StaplerRequest request, StaplerResponse response)
+      throws IOException {
+
+      if (shouldReloadGraph(request, response)) {
+         ChartUtil.generateGraph(request, response,
+            createPercentileGraph(getPercentileTest(), getPercentileWindow(), isPercentileWindowInBuilds()), 800, 150);
+      }
+   }
+
    private JFreeChart createTpsGraph() {
        return createNumberBuildGraph(Test.TPS, "Transaction Per Second");
    }
@@ -91,17 +179,12 @@ public class GrinderProjectAction extends AbstractGrinderAction {
    }
 
    private JFreeChart createNumberBuildGraph(String valueName, String unitName) {
-      DataSetBuilder<String, NumberOnlyBuildLabel> builder = new DataSetBuilder<String, NumberOnlyBuildLabel>();
-
-      for (Object build : project.getBuilds()) {
-         AbstractBuild abstractBuild = (AbstractBuild) build;
-         if (!abstractBuild.isBuilding() && abstractBuild.getResult().isBetterOrEqualTo(Result.SUCCESS)) {
-             try {
-                 GrinderBuildAction action = abstractBuild.getAction(GrinderBuildAction.class);
-                 builder.add(action.getTotals().getValue(valueName), valueName, new NumberOnlyBuildLabel(abstractBuild));
-             } catch (Exception e) {
-                 continue;
-             }
+      DataSetBuilder<String, BuildNumberLabel> builder = new DataSetBuilder<String, BuildNumberLabel>();
+
+      for (BuildSummary summary : GrinderIndex.forProject(project).getSummaries()) {
+         Number value = summary.getTotals().getValue(valueName);
+         if (summary.isSuccessful() && value != null) {
+            builder.add(value, valueName, new BuildNumberLabel(summary.getNumber()));
          }
       }
 
@@ -115,6 +198,94 @@ public class GrinderProjectAction extends AbstractGrinderAction {
          false,
          false);
 
+      return styleBuildGraph(chart);
+   }
+
+   /**
+    * Chart the percentiles of the test time over a window sliding across the latest successful
+    * builds. Each step merges in the sketch of the newest build and takes out the ones leaving the
+    * window, so the cost does not grow with the window size. Only the sketches of the charted
+    * builds and of the builds in their windows are read.
+    */
+   private JFreeChart createPercentileGraph(String testId, int window, boolean windowInBuilds) {
+      DataSetBuilder<String, BuildNumberLabel> builder = new DataSetBuilder<String, BuildNumberLabel>();
+
+      List<BuildSummary> successful = new ArrayList<BuildSummary>();
+      for (BuildSummary summary : GrinderIndex.forProject(project).getSummaries()) {
+         if (summary.isSuccessful()) {
+            successful.add(summary);
+         }
+      }
+      Collections.reverse(successful);
+
+      int charted = Math.max(0, successful.size() - MAX_PERCENTILE_BUILDS);
+      int start = charted;
+      if (charted > 0) {
+         long chartedTimestamp = successful.get(charted).getTimestamp();
+         while (start > 0 && (windowInBuilds
+            ? charted - start + 1 < window
+            : successful.get(start - 1).getTimestamp() > chartedTimestamp - window * DAY_MILLIS)) {
+            start--;
+         }
+      }
+
+      List<BuildSummary> summaries = new ArrayList<BuildSummary>();
+      List<LatencyHistogram> sketches = new ArrayList<LatencyHistogram>();
+      for (BuildSummary summary : successful.subList(start, successful.size())) {
+         LatencyHistogram sketch = getLatencies(summary, testId);
+         if (sketch != null) {
+            summaries.add(summary);
+            sketches.add(sketch);
+         }
+      }
+
+      int firstCharted = successful.isEmpty() ? 0 : successful.get(charted).getNumber();
+      LatencyHistogram.Accumulator merged = new LatencyHistogram.Accumulator();
+      int first = 0;
+      for (int i = 0; i < summaries.size(); i++) {
+         BuildSummary summary = summaries.get(i);
+         merged.add(sketches.get(i));
+         while (windowInBuilds
+            ? i - first >= window
+            : summaries.get(first).getTimestamp() <= summary.getTimestamp() - window * DAY_MILLIS) {
+            merged.remove(sketches.get(first++));
+         }
+         if (summary.getNumber() < firstCharted) {
+            continue;
+         }
+         for (int percentile : PERCENTILES) {
+            builder.add(merged.getPercentile(percentile), "p" + percentile, new BuildNumberLabel(summary.getNumber()));
+         }
+      }
+
+      JFreeChart chart = ChartFactory.createLineChart(
+         testId + " Percentiles over " + window + " " + (windowInBuilds ? WINDOW_IN_BUILDS : WINDOW_IN_DAYS),
+         "Build",
+         "Time (ms)",
+         builder.build(),
+         PlotOrientation.VERTICAL,
+         true,
+         false,
+         false);
+
+      return styleBuildGraph(chart);
+   }
+
+   /**
+    * Get the test time sketch of a test in an indexed build. The sketch of the totals is in the
+    * index, the sketch of a single test is read from the file stored next to the build, without
+    * loading the build.
+    *
+    * @return The sketch, or null if the build has none for the test.
+    */
+   private LatencyHistogram getLatencies(BuildSummary summary, String testId) {
+      if (Test.TOTALS.equals(testId)) {
+         return summary.getTotalLatencies();
+      }
+      return GrinderBuildAction.loadLatencies(new File(project.getBuildDir(), summary.getId())).get(testId);
+   }
+
+   private JFreeChart styleBuildGraph(JFreeChart chart) {
       chart.setBackgroundPaint(Color.WHITE);
 
       CategoryPlot plot = chart.getCategoryPlot();
@@ -148,4 +319,34 @@ public class GrinderProjectAction extends AbstractGrinderAction {
    private boolean shouldReloadGraph(StaplerRequest request, StaplerResponse response) throws IOException {
       return shouldReloadGraph(request, response, project.getLastSuccessfulBuild());
    }
+
+   /**
+    * Chart label for a build known only by its number, as indexed builds are not loaded.
+    */
+   static final class BuildNumberLabel implements Comparable<BuildNumberLabel> {
+      private final int number;
+
+      BuildNumberLabel(int number) {
+         this.number = number;
+      }
+
+      public int compareTo(BuildNumberLabel that) {
+         return number < that.number ? -1 : number > that.number ? 1 : 0;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         return o instanceof BuildNumberLabel && ((BuildNumberLabel) o).number == number;
+      }
+
+      @Override
+      public int hashCode() {
+         return number;
+      }
+
+      @Override
+      public String toString() {
+         return "#" + number;
+      }
+   }
 }
@@ -1,13 +1,16 @@
 package hudson.plugins.grinder;
 
 import hudson.Extension;
+import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.*;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Publisher;
 import hudson.tasks.Recorder;
+import net.sf.json.JSONObject;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.StaplerRequest;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -20,30 +23,86 @@ import java.io.PrintStream;
  */
 public class GrinderPublisher extends Recorder {
 
+   static final String OUT_LOG_PREFIX = "out_";
+   static final String ERROR_LOG_PREFIX = "error_";
+   static final String LOG_SUFFIX = ".log";
+   static final String DATA_LOG_PATTERN = "data_*.log";
+   static final int PROCESS_NAME_LINES = 100;
+
+   /**
+    * Resource samples this far before or after the Grinder samples are still shown on the timeline.
+    */
+   static final long RESOURCE_LOG_MARGIN_MILLIS = 60 * 1000;
+
+   /**
+    * Rough controller heap kept per byte of log read, at most: its decoded characters. The error and
+    * data logs are further bounded by the fixed size aggregates they are read into.
+    */
+   static final int MEMORY_PER_LOG_BYTE = 2;
+
+   /**
+    * Rough controller heap used to stream one log line by line. Logs are read one at a time.
+    */
+   static final long MEMORY_PER_STREAM = 64 * 1024;
+
    private String name;
+   private String resourceLogs;
 
-   @DataBoundConstructor
    public GrinderPublisher(String name) {
+      this(name, null);
+   }
+
+   /**
+    * @param resourceLogs Optional comma separated patterns of resource log files, relative to the workspace.
+    */
+   @DataBoundConstructor
+   public GrinderPublisher(String name, String resourceLogs) {
       this.name = name;
+      this.resourceLogs = resourceLogs;
    }
 
    public String getName() {
       return name;
    }
 
+   public String getResourceLogs() {
+      return resourceLogs;
+   }
+
    @Override
    public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener)
       throws InterruptedException, IOException {
 
       PrintStream logger = listener.getLogger();
       
-      if (build.getWorkspace().child(name).exists()) {
-         InputStream is = build.getWorkspace().child(name).read();
+      FilePath outLog = build.getWorkspace().child(name);
+      if (outLog.exists()) {
+         FilePath[] errorLogs = findErrorLogs(outLog, logger);
+         FilePath[] dataLogs = outLog.getParent().list(DATA_LOG_PATTERN);
+         FilePath[] resourceLogFiles = resourceLogs != null && resourceLogs.trim().length() > 0
+            ? build.getWorkspace().list(resourceLogs) : new FilePath[0];
+         AdmissionControl.Permit permit =
+            getDescriptor().getAdmissionControl().acquire(estimateMemory(outLog, errorLogs, dataLogs), logger);
          try {
-            build.addAction(new GrinderBuildAction(build, is, logger));
-         } catch (GrinderParseException gpe) {
-            logger.println("Grinder report failed!");
-            build.setResult(Result.FAILURE);
+            InputStream is = outLog.read();
+            try {
+               ErrorLogReader errorLogReader = readErrorLogs(errorLogs, logger);
+               DataLogReader dataLogReader = readDataLogs(dataLogs, logger);
+               if (resourceLogFiles.length > 0) {
+                  readResourceLogs(resourceLogFiles, dataLogReader.getTimeline(), logger);
+               }
+               GrinderBuildAction action = new GrinderBuildAction(build, is, errorLogReader, dataLogReader, logger);
+               action.saveSortIndex();
+               action.saveLatencies();
+               build.addAction(action);
+            } catch (GrinderParseException gpe) {
+               logger.println("Grinder report failed!");
+               build.setResult(Result.FAILURE);
+            } finally {
+               is.close();
+            }
+         } finally {
+            permit.release();
          }
       } else {
          logger.println("Grinder out* log file not found!");
@@ -53,6 +112,135 @@ public class GrinderPublisher extends Recorder {
       return true;
    }
 
+   /**
+    * Estimate the controller memory kept while processing the given logs: the test statistics of
+    * the out log, the bounded error and data log aggregates and one stream buffer. Resource logs
+    * only add to the fixed size timeline.
+    */
+   private long estimateMemory(FilePath outLog, FilePath[] errorLogs, FilePath[] dataLogs)
+      throws IOException, InterruptedException {
+      return outLog.length() * MEMORY_PER_LOG_BYTE
+         + Math.min(length(errorLogs) * MEMORY_PER_LOG_BYTE, ErrorLogReader.MAX_RETAINED_BYTES)
+         + Math.min(length(dataLogs) * MEMORY_PER_LOG_BYTE, DataLogReader.MAX_RETAINED_BYTES)
+         + MEMORY_PER_STREAM;
+   }
+
+   private static long length(FilePath[] logs) throws IOException, InterruptedException {
+      long length = 0;
+      for (FilePath log : logs) {
+         length += log.length();
+      }
+      return length;
+   }
+
+   /**
+    * Find the error log of the worker process that wrote the out log, so the error causes add up
+    * to the errors of its tests.
+    *
+    * @return The error log, or none if the out log is not named like a Grinder worker log or the
+    *         worker logged no errors.
+    */
+   private FilePath[] findErrorLogs(FilePath outLog, PrintStream logger) throws IOException, InterruptedException {
+      String fileName = outLog.getName();
+      if (!fileName.startsWith(OUT_LOG_PREFIX) || !fileName.endsWith(LOG_SUFFIX)) {
+         logger.println("Not reading Grinder error log: " + fileName + " is not named out_<worker>.log");
+         return new FilePath[0];
+      }
+      String worker = fileName.substring(OUT_LOG_PREFIX.length(), fileName.length() - LOG_SUFFIX.length());
+      FilePath errorLog = outLog.getParent().child(ERROR_LOG_PREFIX + worker + LOG_SUFFIX);
+      return errorLog.exists() ? new FilePath[] {errorLog} : new FilePath[0];
+   }
+
+   /**
+    * Stream the error logs of the out log, one at a time, into a bounded error cause ranking.
+    * An error log that cannot be read is left out rather than failing the report.
+    */
+   private ErrorLogReader readErrorLogs(FilePath[] errorLogs, PrintStream logger) throws IOException, InterruptedException {
+      ErrorLogReader reader = new ErrorLogReader(logger);
+      for (FilePath errorLog : errorLogs) {
+         InputStream is = errorLog.read();
+         try {
+            reader.read(is);
+         } catch (GrinderParseException gpe) {
+            logger.println("Skipping Grinder error log " + errorLog.getName() + ": " + gpe.getMessage());
+         } finally {
+            is.close();
+         }
+      }
+      logger.println("Read " + reader.getErrorCount() + " errors from Grinder error logs");
+      return reader;
+   }
+
+   /**
+    * Stream the data logs next to the out log, one at a time, into bounded per-test aggregates.
+    * A data log that cannot be read is left out rather than failing the report.
+    */
+   private DataLogReader readDataLogs(FilePath[] dataLogs, PrintStream logger) throws IOException, InterruptedException {
+      DataLogReader reader = new DataLogReader(logger);
+      for (FilePath dataLog : dataLogs) {
+         String worker = readProcessName(dataLog);
+         InputStream is = dataLog.read();
+         try {
+            reader.read(is, worker);
+         } catch (GrinderParseException gpe) {
+            logger.println("Skipping Grinder data log " + dataLog.getName() + ": " + gpe.getMessage());
+         } finally {
+            is.close();
+         }
+      }
+      logger.println("Read " + reader.getSamples() + " samples from Grinder data logs");
+      return reader;
+   }
+
+   /**
+    * Stream the resource logs into the timeline of the run, around the Grinder samples. Without
+    * Grinder samples with start times there is nothing to line them up with, so they are not read.
+    * A resource log that cannot be read is left out rather than failing the report.
+    */
+   private void readResourceLogs(FilePath[] logs, Timeline timeline, PrintStream logger) throws IOException, InterruptedException {
+      if (timeline.isEmpty()) {
+         logger.println("Skipping resource logs: the Grinder data logs have no start times to line them up with");
+         return;
+      }
+      timeline.limitToRecordedRange(RESOURCE_LOG_MARGIN_MILLIS);
+      ResourceLogReader reader = new ResourceLogReader(logger, timeline);
+      for (FilePath log : logs) {
+         InputStream is = log.read();
+         try {
+            if (reader.read(is) == 0) {
+               logger.println("No timestamped samples in resource log " + log.getName());
+            }
+         } catch (GrinderParseException gpe) {
+            logger.println("Skipping resource log " + log.getName() + ": " + gpe.getMessage());
+         } finally {
+            is.close();
+         }
+      }
+      logger.println("Read " + reader.getSamples() + " samples from resource logs");
+   }
+
+   /**
+    * Name the worker process of a data log after the process name in its out log, falling back to
+    * the part of the file name identifying the worker.
+    */
+   private String readProcessName(FilePath dataLog) throws IOException, InterruptedException {
+      String fileName = dataLog.getName();
+      String worker = fileName.substring("data_".length(), fileName.length() - LOG_SUFFIX.length());
+      FilePath outLog = dataLog.getParent().child(OUT_LOG_PREFIX + worker + LOG_SUFFIX);
+      if (outLog.exists()) {
+         InputStream is = outLog.read();
+         try {
+            String processName = ResultReader.readProcessName(is, PROCESS_NAME_LINES);
+            if (processName != null) {
+               return processName;
+            }
+         } finally {
+            is.close();
+         }
+      }
+      return worker;
+   }
+
    @Override
    public Action getProjectAction(AbstractProject<?, ?> project) {
       return project instanceof Project ? new GrinderProjectAction((Project)project) : null;
@@ -62,11 +250,25 @@ public class GrinderPublisher extends Recorder {
       return BuildStepMonitor.NONE;
    }
 
+   @Override
+   public DescriptorImpl getDescriptor() {
+      return (DescriptorImpl) super.getDescriptor();
+   }
+
    @Extension
    public static final class DescriptorImpl extends BuildStepDescriptor<Publisher> {
+      static final int DEFAULT_MAX_CONCURRENT_PUBLISHES = 4;
+      static final int DEFAULT_MEMORY_BUDGET_MB = 256;
+
+      private int maxConcurrentPublishes = DEFAULT_MAX_CONCURRENT_PUBLISHES;
+      private int memoryBudgetMb = DEFAULT_MEMORY_BUDGET_MB;
+
+      private transient final AdmissionControl admissionControl;
 
       public DescriptorImpl() {
          super(GrinderPublisher.class);
+         load();
+         admissionControl = new AdmissionControl(maxConcurrentPublishes, memoryBudgetMb);
       }
 
       public String getDisplayName() {
@@ -77,5 +279,50 @@ public class GrinderPublisher extends Recorder {
       public boolean isApplicable(Class<? extends AbstractProject> jobType) {
          return Project.class.isAssignableFrom(jobType);
       }
+
+      @Override
+      public boolean configure(StaplerRequest req, JSONObject json) throws FormException {
+         int maxConcurrent = readPositive(json, "maxConcurrentPublishes");
+         int memoryBudget = readPositive(json, "memoryBudgetMb");
+         if (maxConcurrent != maxConcurrentPublishes || memoryBudget != memoryBudgetMb) {
+            maxConcurrentPublishes = maxConcurrent;
+            memoryBudgetMb = memoryBudget;
+            // publishes already admitted or waiting keep their place under the new limits
+            admissionControl.resize(maxConcurrentPublishes, memoryBudgetMb);
+         }
+         save();
+         return true;
+      }
+
+      private int readPositive(JSONObject json, String field) throws FormException {
+         try {
+            int value = Integer.parseInt(json.getString(field).trim());
+            if (value > 0) {
+               return value;
+            }
+         } catch (NumberFormatException e) {
+            // reported below
+         }
+         throw new FormException("Must be a positive number", field);
+      }
+
+      public int getMaxConcurrentPublishes() {
+         return maxConcurrentPublishes;
+      }
+
+      public int getMemoryBudgetMb() {
+         return memoryBudgetMb;
+      }
+
+      /**
+       * @return The limits on concurrent Grinder result processing, with their queue statistics.
+       */
+      public AdmissionControl getAdmissionControl() {
+         return admissionControl;
+      }
+
+      public IndexMigration getIndexMigration() {
+         return IndexMigration.getInstance();
+      }
    }
 }
@@ -0,0 +1,39 @@
+package hudson.plugins.grinder;
+
+import hudson.Extension;
+import hudson.model.AbstractBuild;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+
+/**
+ * Keeps the {@link GrinderIndex} of a project, and its row in the {@link DashboardCache}, up to
+ * date as its builds complete or are deleted.
+ */
+@Extension
+public class GrinderRunListener extends RunListener<AbstractBuild> {
+
+   public GrinderRunListener() {
+      super(AbstractBuild.class);
+   }
+
+   @Override
+   public void onCompleted(AbstractBuild build, TaskListener listener) {
+      GrinderBuildAction action = build.getAction(GrinderBuildAction.class);
+      if (action != null) {
+         GrinderIndex index = GrinderIndex.forProject(build.getProject());
+         index.put(new BuildSummary(build, action));
+         index.save();
+         DashboardCache.getInstance().update(build.getProject());
+      }
+   }
+
+   @Override
+   public void onDeleted(AbstractBuild build) {
+      if (build.getAction(GrinderBuildAction.class) != null) {
+         GrinderIndex index = GrinderIndex.forProject(build.getProject());
+         index.remove(build.getNumber());
+         index.save();
+         DashboardCache.getInstance().update(build.getProject());
+      }
+   }
+}
@@ -0,0 +1,153 @@
+package hudson.plugins.grinder;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Hudson;
+import hudson.model.Project;
+import hudson.security.ACL;
+import org.acegisecurity.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Background task adding the builds made before the {@link GrinderIndex} existed to the index of
+ * their project.
+ * <p>
+ * Projects are processed a few at a time on low priority daemon threads, so controller startup
+ * and regular work are not held up. A project is marked as migrated once all its builds have been
+ * walked; builds already in the index are skipped, so an interrupted migration resumes where it
+ * stopped on the next start.
+ * <p>
+ * The {@link DashboardCache} is seeded along the way, from the index of each project once it is
+ * complete.
+ */
+public class IndexMigration implements Runnable {
+   static final int PARALLELISM = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 2));
+   static final int SAVE_INTERVAL = 50;
+
+   private static final Logger LOGGER = Logger.getLogger(IndexMigration.class.getName());
+   private static final IndexMigration INSTANCE = new IndexMigration();
+
+   private final AtomicInteger projectsTotal = new AtomicInteger();
+   private final AtomicInteger projectsDone = new AtomicInteger();
+   private final AtomicInteger buildsIndexed = new AtomicInteger();
+   private volatile boolean started;
+   private volatile boolean finished;
+
+   public static IndexMigration getInstance() {
+      return INSTANCE;
+   }
+
+   /**
+    * Start the migration in the background, unless it was already started.
+    */
+   public synchronized void start() {
+      if (!started) {
+         started = true;
+         newThreadFactory("Grinder index migration").newThread(this).start();
+      }
+   }
+
+   public void run() {
+      SecurityContextHolder.getContext().setAuthentication(ACL.SYSTEM);
+      List<Project> projects = new ArrayList<Project>();
+      for (Project project : Hudson.getInstance().getAllItems(Project.class)) {
+         if (project.getPublishersList().get(GrinderPublisher.class) == null) {
+            continue;
+         }
+         if (GrinderIndex.forProject(project).isMigrated()) {
+            DashboardCache.getInstance().update(project);
+         } else {
+            projects.add(project);
+         }
+      }
+      projectsTotal.set(projects.size());
+      LOGGER.info("Adding the builds of " + projects.size() + " projects to the Grinder index");
+
+      ExecutorService executor = Executors.newFixedThreadPool(PARALLELISM, newThreadFactory("Grinder index migration worker"));
+      for (final Project project : projects) {
+         executor.submit(new Runnable() {
+            public void run() {
+               SecurityContextHolder.getContext().setAuthentication(ACL.SYSTEM);
+               try {
+                  migrate(project);
+                  DashboardCache.getInstance().update(project);
+               } catch (RuntimeException e) {
+                  LOGGER.log(Level.WARNING, "Failed to add the builds of " + project.getFullName() + " to the Grinder index", e);
+               }
+               projectsDone.incrementAndGet();
+            }
+         });
+      }
+      executor.shutdown();
+      try {
+         executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+         executor.shutdownNow();
+         Thread.currentThread().interrupt();
+      }
+      finished = true;
+      LOGGER.info("Added " + buildsIndexed.get() + " builds to the Grinder index");
+   }
+
+   private void migrate(Project<?, ?> project) {
+      GrinderIndex index = GrinderIndex.forProject(project);
+      int added = 0;
+      for (AbstractBuild<?, ?> build : project.getBuilds()) {
+         if (build.isBuilding() || index.contains(build.getNumber())) {
+            continue;
+         }
+         GrinderBuildAction action = build.getAction(GrinderBuildAction.class);
+         if (action != null && action.getTotals() != null) {
+            index.put(new BuildSummary(build, action));
+            buildsIndexed.incrementAndGet();
+            if (++added % SAVE_INTERVAL == 0) {
+               index.save();
+            }
+         }
+      }
+      index.setMigrated(true);
+      index.save();
+      LOGGER.fine("Added " + added + " builds of " + project.getFullName() + " to the Grinder index");
+   }
+
+   private static ThreadFactory newThreadFactory(final String name) {
+      return new ThreadFactory() {
+         private final AtomicInteger count = new AtomicInteger();
+
+         public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, name + " " + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+         }
+      };
+   }
+
+   public boolean isStarted() {
+      return started;
+   }
+
+   public boolean isFinished() {
+      return finished;
+   }
+
+   public int getProjectsTotal() {
+      return projectsTotal.get();
+   }
+
+   public int getProjectsDone() {
+      return projectsDone.get();
+   }
+
+   public int getBuildsIndexed() {
+      return buildsIndexed.get();
+   }
+}
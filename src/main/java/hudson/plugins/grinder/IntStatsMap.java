@@ -0,0 +1,131 @@
+package hudson.plugins.grinder;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from an int key, such as a thread number, to sample statistics kept in
+ * parallel primitive arrays. Recording a sample allocates nothing once the key is present.
+ */
+final class IntStatsMap {
+   private static final int EMPTY = Integer.MIN_VALUE;
+
+   private int[] keys;
+   private long[] counts;
+   private long[] errors;
+   private double[] timeSums;
+   private long[] firstStarts;
+   private long[] lastEnds;
+   private int size;
+
+   IntStatsMap() {
+      allocate(16);
+   }
+
+   private void allocate(int capacity) {
+      keys = new int[capacity];
+      Arrays.fill(keys, EMPTY);
+      counts = new long[capacity];
+      errors = new long[capacity];
+      timeSums = new double[capacity];
+      firstStarts = new long[capacity];
+      lastEnds = new long[capacity];
+   }
+
+   /**
+    * Count one sample for the key.
+    *
+    * @param key   The key, any value but {@link Integer#MIN_VALUE}.
+    * @param start Start of the sample in ms.
+    * @param time  Test time of the sample in ms.
+    * @param error Whether the sample failed, in which case its time is not counted.
+    */
+   void record(int key, long start, long time, boolean error) {
+      int slot = slot(key);
+      if (keys[slot] == EMPTY) {
+         keys[slot] = key;
+         firstStarts[slot] = start;
+         lastEnds[slot] = start + time;
+         if (++size * 2 > keys.length) {
+            grow();
+            slot = slot(key);
+         }
+      }
+      if (error) {
+         errors[slot]++;
+      } else {
+         counts[slot]++;
+         timeSums[slot] += time;
+      }
+      firstStarts[slot] = Math.min(firstStarts[slot], start);
+      lastEnds[slot] = Math.max(lastEnds[slot], start + time);
+   }
+
+   private int slot(int key) {
+      int mask = keys.length - 1;
+      int slot = (key * 0x9E3779B9) >>> 16 & mask;
+      while (keys[slot] != EMPTY && keys[slot] != key) {
+         slot = (slot + 1) & mask;
+      }
+      return slot;
+   }
+
+   private void grow() {
+      int[] oldKeys = keys;
+      long[] oldCounts = counts;
+      long[] oldErrors = errors;
+      double[] oldTimeSums = timeSums;
+      long[] oldFirstStarts = firstStarts;
+      long[] oldLastEnds = lastEnds;
+      allocate(oldKeys.length * 2);
+      for (int i = 0; i < oldKeys.length; i++) {
+         if (oldKeys[i] != EMPTY) {
+            int slot = slot(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            counts[slot] = oldCounts[i];
+            errors[slot] = oldErrors[i];
+            timeSums[slot] = oldTimeSums[i];
+            firstStarts[slot] = oldFirstStarts[i];
+            lastEnds[slot] = oldLastEnds[i];
+         }
+      }
+   }
+
+   int size() {
+      return size;
+   }
+
+   /**
+    * @return Number of slots, to iterate over with the accessors below; unused slots have no key.
+    */
+   int capacity() {
+      return keys.length;
+   }
+
+   boolean isUsed(int slot) {
+      return keys[slot] != EMPTY;
+   }
+
+   int key(int slot) {
+      return keys[slot];
+   }
+
+   long count(int slot) {
+      return counts[slot];
+   }
+
+   long errors(int slot) {
+      return errors[slot];
+   }
+
+   double timeSum(int slot) {
+      return timeSums[slot];
+   }
+
+   long firstStart(int slot) {
+      return firstStarts[slot];
+   }
+
+   long lastEnd(int slot) {
+      return lastEnds[slot];
+   }
+}
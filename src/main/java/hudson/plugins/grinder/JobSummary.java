@@ -0,0 +1,157 @@
+package hudson.plugins.grinder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Model class holding the row of one job on the Grinder dashboard: the totals of its latest build
+ * with Grinder results, the change since the previous stable build and the recent TPS trend.
+ */
+public class JobSummary {
+   static final int SPARKLINE_BUILDS = 20;
+   static final int SPARKLINE_WIDTH = 100;
+   static final int SPARKLINE_HEIGHT = 20;
+
+   private final String fullName;
+   private final String displayName;
+   private final String url;
+   private final int buildNumber;
+   private final boolean successful;
+   private final Test totals;
+   private final int previousBuildNumber;
+   private final Test previousTotals;
+   private final double[] sparkline;
+
+   /**
+    * @param summaries The indexed builds of the job, newest first; must not be empty.
+    */
+   public JobSummary(String fullName, String displayName, String url, List<BuildSummary> summaries) {
+      this.fullName = fullName;
+      this.displayName = displayName;
+      this.url = url;
+
+      BuildSummary latest = summaries.get(0);
+      buildNumber = latest.getNumber();
+      successful = latest.isSuccessful();
+      totals = latest.getTotals();
+
+      BuildSummary previous = null;
+      List<Double> recentTps = new ArrayList<Double>();
+      for (BuildSummary summary : summaries) {
+         if (!summary.isSuccessful()) {
+            continue;
+         }
+         if (previous == null && summary != latest) {
+            previous = summary;
+         }
+         if (recentTps.size() < SPARKLINE_BUILDS && summary.getTotals().getTps() != null) {
+            recentTps.add(summary.getTotals().getTps().doubleValue());
+         }
+         if (previous != null && recentTps.size() == SPARKLINE_BUILDS) {
+            break;
+         }
+      }
+      previousBuildNumber = previous != null ? previous.getNumber() : 0;
+      previousTotals = previous != null ? previous.getTotals() : null;
+
+      sparkline = new double[recentTps.size()];
+      for (int i = 0; i < sparkline.length; i++) {
+         sparkline[i] = recentTps.get(sparkline.length - 1 - i);
+      }
+   }
+
+   public String getFullName() {
+      return fullName;
+   }
+
+   public String getDisplayName() {
+      return displayName;
+   }
+
+   /**
+    * @return URL of the job relative to the root URL.
+    */
+   public String getUrl() {
+      return url;
+   }
+
+   public int getBuildNumber() {
+      return buildNumber;
+   }
+
+   public boolean isSuccessful() {
+      return successful;
+   }
+
+   public Test getTotals() {
+      return totals;
+   }
+
+   /**
+    * @return Number of the stable build before the latest one, or 0 if none.
+    */
+   public int getPreviousBuildNumber() {
+      return previousBuildNumber;
+   }
+
+   /**
+    * @return Change of the TPS since the previous stable build in percent, or null if not known.
+    */
+   public Double getTpsDelta() {
+      return delta(Test.TPS);
+   }
+
+   /**
+    * @return Change of the mean test time since the previous stable build in percent, or null if not known.
+    */
+   public Double getMeanTimeDelta() {
+      return delta(Test.MEAN_TEST_TIME);
+   }
+
+   private Double delta(String metric) {
+      if (previousTotals == null) {
+         return null;
+      }
+      Number value = totals.getValue(metric);
+      Number previousValue = previousTotals.getValue(metric);
+      if (value == null || previousValue == null || previousValue.doubleValue() == 0) {
+         return null;
+      }
+      double delta = (value.doubleValue() - previousValue.doubleValue()) * 100 / previousValue.doubleValue();
+      return Math.round(delta * 10) / 10.0;
+   }
+
+   /**
+    * @return The TPS of the recent stable builds, oldest first.
+    */
+   public double[] getSparkline() {
+      return sparkline;
+   }
+
+   /**
+    * @return The points of an SVG polyline drawing the sparkline, empty with fewer than two builds.
+    */
+   public String getSparklinePoints() {
+      if (sparkline.length < 2) {
+         return "";
+      }
+      double min = Double.MAX_VALUE;
+      double max = -Double.MAX_VALUE;
+      for (double value : sparkline) {
+         min = Math.min(min, value);
+         max = Math.max(max, value);
+      }
+      StringBuilder points = new StringBuilder();
+      for (int i = 0; i < sparkline.length; i++) {
+         double x = i * (double) SPARKLINE_WIDTH / (sparkline.length - 1);
+         double y = max > min
+            ? (SPARKLINE_HEIGHT - 1) - (sparkline[i] - min) * (SPARKLINE_HEIGHT - 2) / (max - min)
+            : SPARKLINE_HEIGHT / 2;
+         if (i > 0) {
+            points.append(' ');
+         }
+         points.append(Math.round(x * 10) / 10.0).append(',').append(Math.round(y * 10) / 10.0);
+      }
+      return points.toString();
+   }
+}
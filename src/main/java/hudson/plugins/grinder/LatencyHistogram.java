@@ -0,0 +1,155 @@
+package hudson.plugins.grinder;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable sketch of a test time distribution, used for percentiles across builds.
+ * <p>
+ * Times are counted in logarithmic buckets growing by {@link #GAMMA}, so any percentile is
+ * reported within {@link #RELATIVE_ERROR} of the real value whatever the number of samples. Only
+ * the buckets in use are stored, which keeps the sketch of a test at a few hundred bytes. Sketches
+ * of several builds are combined by adding up their bucket counts in an {@link Accumulator}.
+ */
+public class LatencyHistogram {
+   static final double GAMMA = 1.05;
+   static final double RELATIVE_ERROR = (GAMMA - 1) / 2;
+
+   private static final double LOG_GAMMA = Math.log(GAMMA);
+
+   private final int[] buckets;
+   private final long[] counts;
+   private final long count;
+
+   private LatencyHistogram(int[] buckets, long[] counts, long count) {
+      this.buckets = buckets;
+      this.counts = counts;
+      this.count = count;
+   }
+
+   /**
+    * @return Number of samples in the sketch.
+    */
+   public long getCount() {
+      return count;
+   }
+
+   /**
+    * @param percentile The percentile, between 0 and 100.
+    * @return The approximate test time in ms at the percentile, or 0 for an empty sketch.
+    */
+   public double getPercentile(double percentile) {
+      long rank = rank(count, percentile);
+      long seen = 0;
+      for (int i = 0; i < buckets.length; i++) {
+         seen += counts[i];
+         if (seen >= rank) {
+            return value(buckets[i]);
+         }
+      }
+      return 0.0;
+   }
+
+   static int bucket(double millis) {
+      if (millis <= 0) {
+         return 0;
+      }
+      return 1 + (int) Math.max(0, Math.floor(Math.log(millis) / LOG_GAMMA));
+   }
+
+   static double value(int bucket) {
+      if (bucket == 0) {
+         return 0.0;
+      }
+      double lower = Math.pow(GAMMA, bucket - 1);
+      return Math.round(lower * (1 + GAMMA) * 50) / 100.0;
+   }
+
+   private static long rank(long count, double percentile) {
+      return Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+   }
+
+   /**
+    * Mutable dense histogram, used to record samples and to merge sketches.
+    */
+   public static class Accumulator {
+      private long[] counts = new long[64];
+      private int maxBucket = -1;
+      private long count;
+
+      /**
+       * Count one sample.
+       *
+       * @param millis The test time in ms.
+       */
+      public void record(double millis) {
+         add(bucket(millis), 1);
+      }
+
+      public void add(LatencyHistogram histogram) {
+         for (int i = 0; i < histogram.buckets.length; i++) {
+            add(histogram.buckets[i], histogram.counts[i]);
+         }
+      }
+
+      /**
+       * Take out a sketch added before, as used for a window sliding over builds.
+       */
+      public void remove(LatencyHistogram histogram) {
+         for (int i = 0; i < histogram.buckets.length; i++) {
+            counts[histogram.buckets[i]] -= histogram.counts[i];
+         }
+         count -= histogram.count;
+      }
+
+      private void add(int bucket, long n) {
+         if (bucket >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(bucket + 1, counts.length * 2));
+         }
+         counts[bucket] += n;
+         count += n;
+         maxBucket = Math.max(maxBucket, bucket);
+      }
+
+      public long getCount() {
+         return count;
+      }
+
+      /**
+       * @param percentile The percentile, between 0 and 100.
+       * @return The approximate test time in ms at the percentile, or 0 if nothing was counted.
+       */
+      public double getPercentile(double percentile) {
+         long rank = rank(count, percentile);
+         long seen = 0;
+         for (int i = 0; i <= maxBucket; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+               return value(i);
+            }
+         }
+         return 0.0;
+      }
+
+      /**
+       * @return Compact copy of the buckets in use.
+       */
+      public LatencyHistogram toHistogram() {
+         int used = 0;
+         for (int i = 0; i <= maxBucket; i++) {
+            if (counts[i] != 0) {
+               used++;
+            }
+         }
+         int[] buckets = new int[used];
+         long[] bucketCounts = new long[used];
+         int j = 0;
+         for (int i = 0; i <= maxBucket; i++) {
+            if (counts[i] != 0) {
+               buckets[j] = i;
+               bucketCounts[j++] = counts[i];
+            }
+         }
+         return new LatencyHistogram(buckets, bucketCounts, count);
+      }
+   }
+}
@@ -0,0 +1,278 @@
+package hudson.plugins.grinder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Class used to read system resource logs recorded during a run into a {@link Timeline}.
+ * <p>
+ * Supported are the text output of <code>sar</code>, the output of <code>vmstat -t</code> and JVM
+ * GC logs with date stamps, both in the Java 8 format and in the unified logging format. The files
+ * are streamed line by line and only the timeline buckets are kept. Times without a time zone are
+ * taken in the time zone of the Jenkins controller.
+ */
+public class ResourceLogReader {
+   private static final Pattern PATTERN_SAR_HEADER = Pattern.compile("^Linux \\S+ \\([^)]*\\)\\s+(\\S+)");
+   private static final Pattern PATTERN_TIME_OF_DAY = Pattern.compile("^(\\d{1,2}):(\\d{2}):(\\d{2})$");
+   private static final Pattern PATTERN_GC_DATE = Pattern.compile("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}\\.\\d{3}[+-]\\d{4}");
+   private static final Pattern PATTERN_JAVA8_GC_PAUSE = Pattern.compile("\\[(?:Full )?GC.*?, (\\d+\\.\\d+) secs\\]");
+   private static final Pattern PATTERN_UNIFIED_GC_PAUSE = Pattern.compile("\\bPause\\b.* (\\d+(?:\\.\\d+)?)ms$");
+
+   private static final String SAR_CPU = "CPU";
+   private static final String SAR_ALL_CPUS = "all";
+   private static final String[] SAR_DATE_FORMATS = {"yyyy-MM-dd", "MM/dd/yyyy", "MM/dd/yy"};
+
+   private final Timeline timeline;
+   private final DateFormat gcDateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ", Locale.ENGLISH);
+   private long samples;
+
+   private transient final PrintStream hudsonConsoleWriter;
+
+   /**
+    * Construct a reader for resource log files.
+    *
+    * @param logger   Logger to print messages to.
+    * @param timeline Timeline to add the resource samples to.
+    */
+   public ResourceLogReader(PrintStream logger, Timeline timeline) {
+      hudsonConsoleWriter = logger;
+      this.timeline = timeline;
+   }
+
+   /**
+    * Read one resource log file, recognizing its format from its first line.
+    *
+    * @param is The input stream giving the resource log file.
+    * @return Number of samples read from the file.
+    * @throws GrinderParseException Thrown if the file could not be read.
+    */
+   public long read(InputStream is) {
+      if (is == null) {
+         throw new GrinderParseException("Empty input stream");
+      }
+
+      long before = samples;
+      try {
+         BufferedReader reader = new BufferedReader(new InputStreamReader(is));
+         String line = reader.readLine();
+         while (line != null && line.trim().length() == 0) {
+            line = reader.readLine();
+         }
+         if (line == null) {
+            return 0;
+         }
+         Matcher sarHeader = PATTERN_SAR_HEADER.matcher(line);
+         if (sarHeader.find()) {
+            readSar(reader, parseSarDate(sarHeader.group(1)));
+         } else if (line.startsWith("procs")) {
+            readVmstat(reader);
+         } else {
+            do {
+               readGcLine(line);
+            } while ((line = reader.readLine()) != null);
+         }
+      } catch (IOException e) {
+         String errMsg = "Problem reading resource log file";
+         hudsonConsoleWriter.println(errMsg + ": " + e.getMessage());
+         throw new GrinderParseException(errMsg, e);
+      }
+      return samples - before;
+   }
+
+   private static long parseSarDate(String date) {
+      for (String format : SAR_DATE_FORMATS) {
+         try {
+            DateFormat dateFormat = new SimpleDateFormat(format, Locale.ENGLISH);
+            dateFormat.setLenient(false);
+            return dateFormat.parse(date).getTime();
+         } catch (ParseException e) {
+            // try the next format
+         }
+      }
+      throw new GrinderParseException("Unexpected sar date: " + date);
+   }
+
+   /**
+    * Read the sections of a sar report. Each section starts with a header row naming its columns
+    * and runs through the day from midnight, so rows going back in time are on the next day.
+    */
+   private void readSar(BufferedReader reader, long date) throws IOException {
+      List<String> columns = null;
+      int cpuColumn = -1;
+      long lastTime = -1;
+      int days = 0;
+      String line;
+      while ((line = reader.readLine()) != null) {
+         String[] tokens = line.trim().split("\\s+");
+         long timeOfDay = parseTimeOfDay(tokens);
+         if (timeOfDay < 0) {
+            continue;
+         }
+         int first = tokens[1].equalsIgnoreCase("AM") || tokens[1].equalsIgnoreCase("PM") ? 2 : 1;
+         List<String> values = Arrays.asList(tokens).subList(first, tokens.length);
+         if (isSarHeader(values)) {
+            columns = values;
+            cpuColumn = columns.indexOf(SAR_CPU);
+            lastTime = -1;
+            days = 0;
+            continue;
+         }
+         if (columns == null || values.size() != columns.size()
+            || (cpuColumn >= 0 && !values.get(cpuColumn).equals(SAR_ALL_CPUS))) {
+            continue;
+         }
+         if (timeOfDay < lastTime) {
+            days++;
+         }
+         lastTime = timeOfDay;
+         long time = localTime(date, days, timeOfDay);
+         add(Timeline.Series.CPU_USER, time, columns, values, "%user");
+         add(Timeline.Series.CPU_SYSTEM, time, columns, values, "%system");
+         add(Timeline.Series.CPU_IOWAIT, time, columns, values, "%iowait");
+         add(Timeline.Series.MEMORY_USED, time, columns, values, "%memused");
+      }
+   }
+
+   private static boolean isSarHeader(List<String> values) {
+      for (String value : values) {
+         if (value.startsWith("%")) {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * @return The time of day in ms the row starts with, or -1 if it starts with none.
+    */
+   private static long parseTimeOfDay(String[] tokens) {
+      if (tokens.length < 2) {
+         return -1;
+      }
+      Matcher matcher = PATTERN_TIME_OF_DAY.matcher(tokens[0]);
+      if (!matcher.matches()) {
+         return -1;
+      }
+      int hours = Integer.parseInt(matcher.group(1));
+      if (tokens[1].equalsIgnoreCase("AM") && hours == 12) {
+         hours = 0;
+      } else if (tokens[1].equalsIgnoreCase("PM") && hours < 12) {
+         hours += 12;
+      }
+      return ((hours * 60L + Integer.parseInt(matcher.group(2))) * 60 + Integer.parseInt(matcher.group(3))) * 1000;
+   }
+
+   /**
+    * Set the given local time of day on a date some days later, across daylight saving time changes.
+    */
+   private static long localTime(long date, int days, long timeOfDay) {
+      Calendar calendar = Calendar.getInstance();
+      calendar.setTimeInMillis(date);
+      int seconds = (int) (timeOfDay / 1000);
+      calendar.add(Calendar.DATE, days);
+      calendar.set(Calendar.HOUR_OF_DAY, seconds / 3600);
+      calendar.set(Calendar.MINUTE, seconds / 60 % 60);
+      calendar.set(Calendar.SECOND, seconds % 60);
+      calendar.set(Calendar.MILLISECOND, 0);
+      return calendar.getTimeInMillis();
+   }
+
+   /**
+    * Read vmstat rows, which need a timestamp as given by <code>vmstat -t</code>. The column header
+    * row ends with the time zone of the timestamps.
+    */
+   private void readVmstat(BufferedReader reader) throws IOException {
+      List<String> columns = null;
+      DateFormat dateFormat = null;
+      String line;
+      while ((line = reader.readLine()) != null) {
+         String[] tokens = line.trim().split("\\s+");
+         if (line.startsWith("procs")) {
+            continue;
+         }
+         if (tokens[0].equals("r")) {
+            columns = Arrays.asList(tokens);
+            dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.ENGLISH);
+            String zone = tokens[tokens.length - 1];
+            if (TimeZone.getTimeZone(zone).getID().equals(zone)) {
+               dateFormat.setTimeZone(TimeZone.getTimeZone(zone));
+            }
+            continue;
+         }
+         if (columns == null || tokens.length != columns.size() + 1) {
+            continue;
+         }
+         long time;
+         try {
+            time = dateFormat.parse(tokens[tokens.length - 2] + " " + tokens[tokens.length - 1]).getTime();
+         } catch (ParseException e) {
+            continue;
+         }
+         List<String> values = Arrays.asList(tokens);
+         add(Timeline.Series.CPU_USER, time, columns, values, "us");
+         add(Timeline.Series.CPU_SYSTEM, time, columns, values, "sy");
+         add(Timeline.Series.CPU_IOWAIT, time, columns, values, "wa");
+      }
+   }
+
+   private void add(Timeline.Series series, long time, List<String> columns, List<String> values, String column) {
+      int index = columns.indexOf(column);
+      if (index < 0) {
+         return;
+      }
+      try {
+         timeline.add(series, time, Double.parseDouble(values.get(index).replace(',', '.')));
+         samples++;
+      } catch (NumberFormatException e) {
+         // not a sample
+      }
+   }
+
+   /**
+    * Read one line of a GC log, counting the stop-the-world pauses of date stamped lines.
+    */
+   private void readGcLine(String line) {
+      Matcher date = PATTERN_GC_DATE.matcher(line);
+      if (!date.find() || date.start() > 1 || line.contains("concurrent")) {
+         return;
+      }
+      double pauseMillis;
+      Matcher pause = PATTERN_UNIFIED_GC_PAUSE.matcher(line);
+      if (line.startsWith("[") && pause.find()) {
+         pauseMillis = Double.parseDouble(pause.group(1));
+      } else if ((pause = PATTERN_JAVA8_GC_PAUSE.matcher(line)).find()) {
+         pauseMillis = Double.parseDouble(pause.group(1)) * 1000;
+      } else {
+         return;
+      }
+      long time;
+      try {
+         time = gcDateFormat.parse(date.group()).getTime();
+      } catch (ParseException e) {
+         return;
+      }
+      timeline.add(Timeline.Series.GC_TIME, time, pauseMillis);
+      timeline.add(Timeline.Series.GC_MAX_PAUSE, time, pauseMillis);
+      samples++;
+   }
+
+   /**
+    * @return Number of samples read from all files.
+    */
+   public long getSamples() {
+      return samples;
+   }
+}
@@ -1,17 +1,18 @@
 package hudson.plugins.grinder;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
-import java.util.Scanner;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
- * Class used to read results from a Grinder output file.
+ * Class used to read results from a Grinder output file. The statistics table is decoded with a
+ * {@link ColumnPlan} built from its header.
  *
  * @author Eivind B Waaler
  */
@@ -21,10 +22,10 @@ public class ResultReader {
 
    private transient final PrintStream hudsonConsoleWriter;
 
-   private static final String PATTERN_STATS_HEADER = " Tests        Errors .*";
-   private static final String PATTERN_TEST = "Test \\d.*";
-   private static final String PATTERN_TOTALS = "Totals .*";
-   private static final String PATTERN_TPS = " TPS ";
+   private static final Pattern PATTERN_STATS_HEADER = Pattern.compile(" Tests        Errors .*");
+   private static final Pattern PATTERN_TEST = Pattern.compile("Test \\d.*");
+   private static final Pattern PATTERN_TOTALS = Pattern.compile("Totals .*");
+   private static final Pattern PATTERN_PROCESS = Pattern.compile("\\(process ([^)]+)\\)");
 
    /**
     * Construct a result reader for grinder out log files.
@@ -60,19 +61,22 @@ public class ResultReader {
       try {
          BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(is));
 
-         String str = findStats(bufferedReader);
-         boolean hasTPS = str.contains(PATTERN_TPS);
-
-         Scanner scanner = new Scanner(str);
-         String match = scanner.findWithinHorizon(PATTERN_TEST, 0);
-
-         boolean hasnext = scanner.hasNext();
-         while (match != null) {
-            tests.add(readTest(match, false, hasTPS));
-            match = scanner.findWithinHorizon(PATTERN_TEST, 0);
+         ColumnPlan plan = ColumnPlan.parse(findStatsHeader(bufferedReader));
+         String line;
+         while ((line = bufferedReader.readLine()) != null) {
+            hudsonConsoleWriter.println(line);
+            if (totals == null) {
+               Matcher matcher = PATTERN_TEST.matcher(line);
+               if (matcher.find()) {
+                  tests.add(plan.decode(line.substring(matcher.start()), false));
+               } else if ((matcher = PATTERN_TOTALS.matcher(line)).find()) {
+                  totals = plan.decode(line.substring(matcher.start()), true);
+               }
+            }
+         }
+         if (totals == null) {
+            throw new GrinderParseException("Missing totals in statistics");
          }
-         match = scanner.findWithinHorizon(PATTERN_TOTALS, 0);
-         totals = readTest(match, true, hasTPS);
       } catch (Exception e) {
          String errMsg = "Problem parsing Grinder out log file";
          hudsonConsoleWriter.println(errMsg + ": " + e.getMessage());
@@ -89,90 +93,41 @@ public class ResultReader {
       return totals;
    }
 
-   private Test readTest(String testLine, boolean isTotals, boolean hasTPS) {
-      Scanner scanner = new Scanner(testLine).useDelimiter("\\s{2,}").useLocale(Locale.ENGLISH);
-      String id = scanner.next();
-      int testCount = scanner.nextInt();
-      int errorCount = scanner.nextInt();
-      double meanTestTime = scanner.nextDouble();
-      double testStdDevTime = scanner.nextDouble();
-      double tps = 0.0;
-      if (hasTPS) {
-         tps = scanner.nextDouble();
-      }
-      if (scanner.hasNextDouble()) {
-         double meanRespLength = scanner.nextDouble();
-         double respBytesPrSecond = 0.0;
-         if (scanner.hasNextDouble()) {
-            respBytesPrSecond = scanner.nextDouble();
-         } else {
-            scanner.next(); // reported as '?' in log
-         }
-         int respErrorCount = scanner.nextInt();
-         double resolveHostMeanTime = 0.0;
-         if (scanner.hasNextDouble()) {
-            resolveHostMeanTime = scanner.nextDouble();
-         } else {
-            scanner.next(); // reported as '-' in log
-         }
-         double establishConnMeanTime = 0.0;
-         if (scanner.hasNextDouble()) {
-            establishConnMeanTime = scanner.nextDouble();
-         } else {
-            scanner.next(); // reported as '-' in log
+   /**
+    * Find the name of the worker process that wrote an out log file, from the first lines of the file.
+    *
+    * @param is       The input stream giving the out log file.
+    * @param maxLines Number of lines to look at.
+    * @return The process name, or null if not found.
+    * @throws IOException Thrown if reading fails.
+    */
+   public static String readProcessName(InputStream is, int maxLines) throws IOException {
+      BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(is));
+      String line;
+      for (int i = 0; i < maxLines && (line = bufferedReader.readLine()) != null; i++) {
+         Matcher matcher = PATTERN_PROCESS.matcher(line);
+         if (matcher.find()) {
+            return matcher.group(1);
          }
-         double firstByteMeanTime = Double.valueOf(scanner.next().replaceAll("[)]",""));
-         String name = isTotals ? "" : scanner.next().replaceAll("\"", "");
-
-         return new Test(
-            id,
-            testCount,
-            errorCount,
-            meanTestTime,
-            testStdDevTime,
-            tps,
-            meanRespLength,
-            respBytesPrSecond,
-            respErrorCount,
-            resolveHostMeanTime,
-            establishConnMeanTime,
-            firstByteMeanTime,
-            name
-         );
-      } else {
-         String name = isTotals ? "" : scanner.next().replaceAll("\"", "");
-
-         return new Test(
-            id,
-            testCount,
-            errorCount,
-            meanTestTime,
-            testStdDevTime,
-            tps,
-            name
-         );
       }
+      return null;
    }
 
-   private String findStats(BufferedReader bufferedReader) {
-      Scanner scanner = new Scanner(bufferedReader);
-      Pattern pattern = Pattern.compile(PATTERN_STATS_HEADER);
-      StringBuilder toBeReturned = new StringBuilder();
-      String line = scanner.findInLine(pattern);
-      while (line == null && scanner.hasNextLine()) {
-         scanner.nextLine();
-         line = scanner.findInLine(pattern);
+   /**
+    * Skip to the statistics table and read its header, which ends at the first blank line.
+    */
+   private List<String> findStatsHeader(BufferedReader bufferedReader) throws IOException {
+      List<String> header = new ArrayList<String>();
+      String line = bufferedReader.readLine();
+      while (line != null && !PATTERN_STATS_HEADER.matcher(line).find()) {
+         line = bufferedReader.readLine();
       }
-      hudsonConsoleWriter.println(line);
-      toBeReturned.append(line).append("\n");
-
-      while (scanner.hasNextLine()) {
-         String nextline = scanner.nextLine();
-         hudsonConsoleWriter.println(nextline);
-         toBeReturned.append(nextline).append("\n");
+      while (line != null && line.trim().length() > 0) {
+         hudsonConsoleWriter.println(line);
+         header.add(line);
+         line = bufferedReader.readLine();
       }
-
-      return toBeReturned.toString();
+      return header;
    }
 
 }
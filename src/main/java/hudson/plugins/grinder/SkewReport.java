@@ -0,0 +1,89 @@
+package hudson.plugins.grinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Model class comparing the worker processes of a distributed run, to reveal a load generator
+ * that skews the totals.
+ * <p>
+ * A worker or thread is flagged when it is {@link #OUTLIER_RATIO} times slower than the median,
+ * or, for workers, reaches that many times fewer TPS. The median is used rather than standard
+ * scores, as those cannot flag anything among the handful of workers of a typical run.
+ */
+public class SkewReport {
+   static final double OUTLIER_RATIO = 1.5;
+
+   private final List<WorkerStats> workers;
+   private final double tpsCov;
+   private final double meanTimeCov;
+
+   public SkewReport(List<WorkerStats> workers) {
+      this.workers = new ArrayList<WorkerStats>(workers);
+
+      double[] tps = new double[workers.size()];
+      double[] meanTimes = new double[workers.size()];
+      for (int i = 0; i < tps.length; i++) {
+         tps[i] = workers.get(i).getTps();
+         meanTimes[i] = workers.get(i).getMeanTime();
+      }
+      tpsCov = round(cov(tps));
+      meanTimeCov = round(cov(meanTimes));
+
+      double medianTps = median(tps);
+      double medianMeanTime = median(meanTimes);
+      for (WorkerStats worker : this.workers) {
+         worker.setOutlier(worker.getMeanTime() > medianMeanTime * OUTLIER_RATIO
+            || worker.getTps() * OUTLIER_RATIO < medianTps);
+      }
+   }
+
+   public List<WorkerStats> getWorkers() {
+      return Collections.unmodifiableList(workers);
+   }
+
+   /**
+    * @return Coefficient of variation of the TPS of the workers.
+    */
+   public double getTpsCov() {
+      return tpsCov;
+   }
+
+   /**
+    * @return Coefficient of variation of the mean test time of the workers.
+    */
+   public double getMeanTimeCov() {
+      return meanTimeCov;
+   }
+
+   static double cov(double[] values) {
+      if (values.length == 0) {
+         return 0.0;
+      }
+      double sum = 0.0;
+      double sumSquares = 0.0;
+      for (double value : values) {
+         sum += value;
+         sumSquares += value * value;
+      }
+      double mean = sum / values.length;
+      double variance = Math.max(0.0, sumSquares / values.length - mean * mean);
+      return mean == 0.0 ? 0.0 : Math.sqrt(variance) / mean;
+   }
+
+   static double median(double[] values) {
+      if (values.length == 0) {
+         return 0.0;
+      }
+      double[] sorted = values.clone();
+      Arrays.sort(sorted);
+      int middle = sorted.length / 2;
+      return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+   }
+
+   static double round(double value) {
+      return Math.round(value * 100) / 100.0;
+   }
+}
@@ -0,0 +1,109 @@
+package hudson.plugins.grinder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fixed-size frequency counter using the Space-Saving heavy hitters algorithm.
+ * <p>
+ * At most <code>capacity</code> keys are tracked. When a new key arrives and all counters
+ * are taken, the counter with the lowest count is handed over to the new key, which inherits
+ * that count as its possible overestimation. Any key occurring more than
+ * <code>total / capacity</code> times is guaranteed to be present.
+ */
+public class SpaceSaving {
+   private final int capacity;
+   private final Map<String, Counter> counters;
+   private long total;
+
+   public SpaceSaving(int capacity) {
+      if (capacity < 1) {
+         throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+      }
+      this.capacity = capacity;
+      this.counters = new HashMap<String, Counter>(capacity * 2);
+   }
+
+   /**
+    * Count one occurrence of the given key.
+    *
+    * @param key The key to count.
+    */
+   public void offer(String key) {
+      total++;
+      Counter counter = counters.get(key);
+      if (counter != null) {
+         counter.count++;
+         return;
+      }
+      if (counters.size() < capacity) {
+         counters.put(key, new Counter(key, 1, 0));
+         return;
+      }
+      Counter min = null;
+      for (Counter c : counters.values()) {
+         if (min == null || c.count < min.count) {
+            min = c;
+         }
+      }
+      counters.remove(min.key);
+      counters.put(key, new Counter(key, min.count + 1, min.count));
+   }
+
+   /**
+    * @return Number of occurrences offered, including evicted keys.
+    */
+   public long getTotal() {
+      return total;
+   }
+
+   /**
+    * Get the most frequent keys, highest count first.
+    *
+    * @param k Maximum number of keys to return.
+    * @return The top keys with their approximate counts.
+    */
+   public List<Counter> getTop(int k) {
+      List<Counter> sorted = new ArrayList<Counter>(counters.values());
+      Collections.sort(sorted, new Comparator<Counter>() {
+         public int compare(Counter c1, Counter c2) {
+            return c1.count < c2.count ? 1 : c1.count > c2.count ? -1 : c1.key.compareTo(c2.key);
+         }
+      });
+      return sorted.size() > k ? sorted.subList(0, k) : sorted;
+   }
+
+   /**
+    * One tracked key with its approximate count.
+    */
+   public static class Counter {
+      private final String key;
+      private long count;
+      private final long error;
+
+      Counter(String key, long count, long error) {
+         this.key = key;
+         this.count = count;
+         this.error = error;
+      }
+
+      public String getKey() {
+         return key;
+      }
+
+      public long getCount() {
+         return count;
+      }
+
+      /**
+       * @return Upper bound of how much the count may be overestimated.
+       */
+      public long getError() {
+         return error;
+      }
+   }
+}
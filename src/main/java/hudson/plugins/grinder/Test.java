@@ -1,5 +1,8 @@
 package hudson.plugins.grinder;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 
@@ -9,6 +12,9 @@ import java.util.HashMap;
  * @author Eivind B Waaler
  */
 public class Test {
+   public static final String TOTALS = "Totals";
+   public static final String ID_PREFIX = "Test ";
+
    public static final String MEAN_RESPONSE_LENGTH = "Mean Response Length";
    public static final String TEST_COUNT = "Test Count";
    public static final String ERROR_COUNT = "Error Count";
@@ -24,6 +30,7 @@ public class Test {
    private String id;
    private String name;
    private Map<String, Number> values = new HashMap<String, Number>();
+   private Map<String, Number> extraValues;
 
    public Test(
       String id,
@@ -61,6 +68,19 @@ public class Test {
       this.name = name;
    }
 
+   /**
+    * Create a test from decoded statistics.
+    *
+    * @param values      Values of the statistics known to the plugin, keyed by the constants of this class.
+    * @param extraValues Values of custom statistics, keyed by their column label and in column order.
+    */
+   public Test(String id, String name, Map<String, Number> values, Map<String, Number> extraValues) {
+      this.id = id;
+      this.name = name;
+      this.values.putAll(values);
+      this.extraValues = extraValues.isEmpty() ? null : extraValues;
+   }
+
    public String getId() {
       return id;
    }
@@ -110,7 +130,21 @@ public class Test {
    }
 
    public Number getValue(String name) {
-      return values.get(name);
+      Number value = values.get(name);
+      if (value == null && extraValues != null) {
+         value = extraValues.get(name);
+      }
+      return value;
+   }
+
+   /**
+    * @return The labels of the custom statistics reported for this test, in column order.
+    */
+   public List<String> getExtraMetrics() {
+      if (extraValues == null) {
+         return Collections.emptyList();
+      }
+      return new ArrayList<String>(extraValues.keySet());
    }
 
    public String getName() {
@@ -0,0 +1,194 @@
+package hudson.plugins.grinder;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * One page of the test table of the build report, sorted and filtered on the server.
+ * <p>
+ * Only the tests of the page are looked at when no filter is given. With a filter, the tests are
+ * scanned in sort order and only those on the page are kept.
+ */
+public class TestPage {
+   public static final int DEFAULT_SIZE = 50;
+   public static final int MAX_SIZE = 500;
+
+   static final String ORDER_DESCENDING = "desc";
+   static final String ORDER_ASCENDING = "asc";
+
+   private final List<Test> tests = new ArrayList<Test>();
+   private final String sort;
+   private final boolean descending;
+   private final String filter;
+   private final int size;
+   private int page;
+   private int matchCount;
+   private final Map<String, String> keptParameters = new LinkedHashMap<String, String>();
+
+   /**
+    * @param tests      The tests of the build, in report order.
+    * @param sortIndex  The sort index of the tests.
+    * @param sort       Key to sort by, see {@link TestSortIndex#getOrder(String)}; report order if unknown.
+    * @param descending Whether to sort in descending order.
+    * @param filter     Text the ID or name of the tests must contain, ignoring case, or null.
+    * @param page       The page to show, starting at 1.
+    * @param size       Number of tests per page.
+    */
+   public TestPage(List<Test> tests, TestSortIndex sortIndex, String sort, boolean descending, String filter,
+                   int page, int size) {
+      int[] order = sortIndex.getOrder(sort);
+      this.sort = order != null ? sort : null;
+      this.descending = order != null && descending;
+      this.filter = filter != null && filter.trim().length() > 0 ? filter.trim() : null;
+      this.size = Math.max(1, Math.min(MAX_SIZE, size));
+      this.page = Math.max(1, page);
+
+      if (this.filter == null) {
+         matchCount = tests.size();
+         this.page = Math.min(this.page, getPageCount());
+         int from = (this.page - 1) * this.size;
+         int to = Math.min(matchCount, from + this.size);
+         for (int i = from; i < to; i++) {
+            this.tests.add(tests.get(position(order, i, matchCount)));
+         }
+         return;
+      }
+
+      String text = this.filter.toLowerCase(Locale.ENGLISH);
+      int from = (this.page - 1) * this.size;
+      for (int i = 0; i < tests.size(); i++) {
+         Test test = tests.get(position(order, i, tests.size()));
+         if (contains(test.getId(), text) || contains(test.getName(), text)) {
+            if (matchCount >= from && matchCount < from + this.size) {
+               this.tests.add(test);
+            }
+            matchCount++;
+         }
+      }
+      if (this.tests.isEmpty() && matchCount > 0) {
+         // past the last page, for instance after narrowing the filter
+         TestPage last = new TestPage(tests, sortIndex, sort, descending, filter, getPageCount(), size);
+         this.tests.addAll(last.tests);
+         this.page = last.page;
+      }
+   }
+
+   private int position(int[] order, int i, int count) {
+      if (order == null) {
+         return i;
+      }
+      return descending ? order[count - 1 - i] : order[i];
+   }
+
+   private static boolean contains(String value, String text) {
+      return value != null && value.toLowerCase(Locale.ENGLISH).contains(text);
+   }
+
+   /**
+    * @return The tests on the page.
+    */
+   public List<Test> getTests() {
+      return tests;
+   }
+
+   /**
+    * @return The key the tests are sorted by, or null for report order.
+    */
+   public String getSort() {
+      return sort;
+   }
+
+   public boolean isDescending() {
+      return descending;
+   }
+
+   public String getFilter() {
+      return filter;
+   }
+
+   public int getPage() {
+      return page;
+   }
+
+   public int getSize() {
+      return size;
+   }
+
+   /**
+    * @return Number of tests matching the filter.
+    */
+   public int getMatchCount() {
+      return matchCount;
+   }
+
+   public int getPageCount() {
+      return Math.max(1, (matchCount + size - 1) / size);
+   }
+
+   /**
+    * @return Position of the first test of the page among the matching tests, starting at 1.
+    */
+   public int getFirst() {
+      return tests.isEmpty() ? 0 : (page - 1) * size + 1;
+   }
+
+   public int getLast() {
+      return (page - 1) * size + tests.size();
+   }
+
+   /**
+    * Keep a request parameter of another part of the report in the sort and page links, so
+    * following them does not reset it.
+    *
+    * @param value The value of the parameter, or null if not requested.
+    */
+   public void keepParameter(String name, String value) {
+      if (value != null) {
+         keptParameters.put(name, value);
+      }
+   }
+
+   /**
+    * @return Query string sorting by the given key, reversing the order if already sorted by it.
+    */
+   public String getSortUrl(String key) {
+      boolean reverse = key.equals(sort) && !descending;
+      return query(key, reverse, 1);
+   }
+
+   /**
+    * @return Query string showing the given page with the current sort order and filter.
+    */
+   public String getPageUrl(int page) {
+      return query(sort, descending, page);
+   }
+
+   private String query(String sort, boolean descending, int page) {
+      StringBuilder query = new StringBuilder("?");
+      for (Map.Entry<String, String> parameter : keptParameters.entrySet()) {
+         query.append(encode(parameter.getKey())).append('=').append(encode(parameter.getValue())).append('&');
+      }
+      if (sort != null) {
+         query.append("sort=").append(encode(sort))
+            .append("&order=").append(descending ? ORDER_DESCENDING : ORDER_ASCENDING).append('&');
+      }
+      if (filter != null) {
+         query.append("filter=").append(encode(filter)).append('&');
+      }
+      query.append("size=").append(size).append("&page=").append(page);
+      return query.toString();
+   }
+
+   private static String encode(String value) {
+      try {
+         return URLEncoder.encode(value, "UTF-8");
+      } catch (UnsupportedEncodingException e) {
+         throw new IllegalStateException(e);
+      }
+   }
+}
@@ -0,0 +1,135 @@
+package hudson.plugins.grinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Orders of the tests of a build by each column of the build report.
+ * <p>
+ * The orders are computed once per build, so that a page of the report or the top tests of the
+ * chart are picked without sorting all tests on every request.
+ */
+public class TestSortIndex {
+   public static final String ID = "ID";
+   public static final String NAME = "Name";
+
+   /**
+    * The statistics of the build report that can be sorted on, besides custom statistics.
+    */
+   static final List<String> METRICS = Collections.unmodifiableList(Arrays.asList(
+      Test.TEST_COUNT,
+      Test.ERROR_COUNT,
+      Test.TPS,
+      Test.MEAN_TEST_TIME,
+      Test.TEST_TIME_STANDARD_DEVIATION,
+      Test.MEAN_RESPONSE_LENGTH,
+      Test.RESPONSE_ERROR_COUNT));
+
+   private final int testCount;
+   private final Map<String, int[]> orders = new HashMap<String, int[]>();
+
+   /**
+    * @param tests        The tests of the build, in report order.
+    * @param extraMetrics The custom statistics of the build.
+    */
+   public TestSortIndex(final List<Test> tests, List<String> extraMetrics) {
+      testCount = tests.size();
+      orders.put(ID, order(tests.size(), new Comparator<Integer>() {
+         public int compare(Integer a, Integer b) {
+            return compareIds(tests.get(a).getId(), tests.get(b).getId());
+         }
+      }));
+      orders.put(NAME, order(tests.size(), new Comparator<Integer>() {
+         public int compare(Integer a, Integer b) {
+            return compareStrings(tests.get(a).getName(), tests.get(b).getName());
+         }
+      }));
+      for (final String metric : getMetrics(extraMetrics)) {
+         orders.put(metric, order(tests.size(), new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+               return compareNumbers(tests.get(a).getValue(metric), tests.get(b).getValue(metric));
+            }
+         }));
+      }
+   }
+
+   /**
+    * @return The statistics tests can be sorted and charted by: the standard ones, then the custom ones.
+    */
+   public static List<String> getMetrics(List<String> extraMetrics) {
+      List<String> metrics = new ArrayList<String>(METRICS);
+      metrics.addAll(extraMetrics);
+      return metrics;
+   }
+
+   private static int[] order(int size, Comparator<Integer> comparator) {
+      Integer[] positions = new Integer[size];
+      for (int i = 0; i < size; i++) {
+         positions[i] = i;
+      }
+      // stable, so ties keep the report order
+      Arrays.sort(positions, comparator);
+      int[] order = new int[size];
+      for (int i = 0; i < size; i++) {
+         order[i] = positions[i];
+      }
+      return order;
+   }
+
+   /**
+    * Compare test IDs by their number, so that "Test 9" comes before "Test 10".
+    */
+   static int compareIds(String a, String b) {
+      long numberA = idNumber(a);
+      long numberB = idNumber(b);
+      if (numberA >= 0 && numberB >= 0 && numberA != numberB) {
+         return numberA < numberB ? -1 : 1;
+      }
+      return compareStrings(a, b);
+   }
+
+   private static long idNumber(String id) {
+      if (id == null || !id.startsWith(Test.ID_PREFIX)) {
+         return -1;
+      }
+      try {
+         return Long.parseLong(id.substring(Test.ID_PREFIX.length()).trim());
+      } catch (NumberFormatException e) {
+         return -1;
+      }
+   }
+
+   private static int compareStrings(String a, String b) {
+      if (a == null || b == null) {
+         return a == null ? (b == null ? 0 : -1) : 1;
+      }
+      return a.compareToIgnoreCase(b);
+   }
+
+   private static int compareNumbers(Number a, Number b) {
+      if (a == null || b == null) {
+         return a == null ? (b == null ? 0 : -1) : 1;
+      }
+      return Double.compare(a.doubleValue(), b.doubleValue());
+   }
+
+   /**
+    * @return Number of tests the index was computed for.
+    */
+   public int getTestCount() {
+      return testCount;
+   }
+
+   /**
+    * @param key {@link #ID}, {@link #NAME} or the name of a statistic.
+    * @return The positions of the tests in ascending order of the key, or null if not sortable by it.
+    */
+   public int[] getOrder(String key) {
+      return key != null ? orders.get(key) : null;
+   }
+}
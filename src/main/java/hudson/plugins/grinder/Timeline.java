@@ -0,0 +1,234 @@
+package hudson.plugins.grinder;
+
+import java.util.Arrays;
+
+/**
+ * Time-bucketed series of a run, used to line up the Grinder samples with resource samples of the
+ * machines involved.
+ * <p>
+ * Each series holds at most {@link #MAX_BUCKETS} buckets. When a sample falls outside of them, the
+ * bucket width is doubled and neighbouring buckets are merged, so memory use is fixed whatever the
+ * length of the run or the number of samples.
+ */
+public class Timeline {
+   static final int MAX_BUCKETS = 200;
+   static final long INITIAL_BUCKET_MILLIS = 1000;
+
+   /**
+    * How the samples falling in a bucket are combined.
+    */
+   enum Aggregation {
+      /** Number of samples per second. */
+      RATE,
+      /** Mean of the sample values. */
+      MEAN,
+      /** Largest sample value. */
+      MAX,
+      /** Sum of the sample values, taken as ms, in percent of the bucket width. */
+      TIME_SHARE
+   }
+
+   /**
+    * The series a timeline can hold. Series on the same {@link #getAxis() axis} share a unit.
+    */
+   public enum Series {
+      TPS("Grinder TPS", Aggregation.RATE, 0),
+      MEAN_TIME("Grinder mean time (ms)", Aggregation.MEAN, 1),
+      GC_MAX_PAUSE("GC max pause (ms)", Aggregation.MAX, 1),
+      CPU_USER("CPU user (%)", Aggregation.MEAN, 2),
+      CPU_SYSTEM("CPU system (%)", Aggregation.MEAN, 2),
+      CPU_IOWAIT("CPU iowait (%)", Aggregation.MEAN, 2),
+      MEMORY_USED("Memory used (%)", Aggregation.MEAN, 2),
+      GC_TIME("GC time (%)", Aggregation.TIME_SHARE, 2);
+
+      private final String label;
+      private final Aggregation aggregation;
+      private final int axis;
+
+      Series(String label, Aggregation aggregation, int axis) {
+         this.label = label;
+         this.aggregation = aggregation;
+         this.axis = axis;
+      }
+
+      public String getLabel() {
+         return label;
+      }
+
+      /**
+       * @return 0 for transaction rates, 1 for times in ms and 2 for percentages.
+       */
+      public int getAxis() {
+         return axis;
+      }
+   }
+
+   private long origin;
+   private long width = INITIAL_BUCKET_MILLIS;
+   private int used;
+   private double[][] sums = new double[Series.values().length][];
+   private long[][] counts = new long[Series.values().length][];
+
+   private transient boolean limited;
+   private transient long from;
+   private transient long to;
+
+   /**
+    * Count one sample.
+    *
+    * @param series The series the sample belongs to.
+    * @param time   Time of the sample in ms since the epoch.
+    * @param value  Value of the sample, ignored for {@link Aggregation#RATE rates}.
+    */
+   public void add(Series series, long time, double value) {
+      if (limited && (time < from || time > to)) {
+         return;
+      }
+      if (used == 0) {
+         origin = floor(time, width);
+      }
+      while (time < origin) {
+         extendBackwards(time);
+      }
+      while (time >= origin + MAX_BUCKETS * width) {
+         coarsen();
+      }
+      int bucket = (int) ((time - origin) / width);
+      used = Math.max(used, bucket + 1);
+
+      int s = series.ordinal();
+      if (sums[s] == null) {
+         sums[s] = new double[MAX_BUCKETS];
+         counts[s] = new long[MAX_BUCKETS];
+      }
+      if (series.aggregation == Aggregation.MAX) {
+         sums[s][bucket] = counts[s][bucket] == 0 ? value : Math.max(sums[s][bucket], value);
+      } else {
+         sums[s][bucket] += value;
+      }
+      counts[s][bucket]++;
+   }
+
+   /**
+    * Ignore samples outside of the range the timeline already covers, widened by the given margin,
+    * so that resource logs running longer than the test do not stretch the timeline.
+    */
+   public void limitToRecordedRange(long margin) {
+      if (used > 0) {
+         limited = true;
+         from = origin - margin;
+         to = origin + used * width + margin;
+      }
+   }
+
+   private void extendBackwards(long time) {
+      int shift = (int) Math.min(MAX_BUCKETS, (origin - floor(time, width)) / width);
+      if (used + shift > MAX_BUCKETS) {
+         coarsen();
+         return;
+      }
+      for (int s = 0; s < sums.length; s++) {
+         if (sums[s] != null) {
+            System.arraycopy(sums[s], 0, sums[s], shift, used);
+            System.arraycopy(counts[s], 0, counts[s], shift, used);
+            Arrays.fill(sums[s], 0, shift, 0.0);
+            Arrays.fill(counts[s], 0, shift, 0);
+         }
+      }
+      origin -= shift * width;
+      used += shift;
+   }
+
+   /**
+    * Double the bucket width, merging the buckets falling into the same wider bucket.
+    */
+   private void coarsen() {
+      long newWidth = width * 2;
+      long newOrigin = floor(origin, newWidth);
+      int offset = (int) ((origin - newOrigin) / width);
+      int newUsed = (used + offset + 1) / 2;
+      for (int s = 0; s < sums.length; s++) {
+         if (sums[s] == null) {
+            continue;
+         }
+         boolean max = Series.values()[s].aggregation == Aggregation.MAX;
+         double[] newSums = new double[MAX_BUCKETS];
+         long[] newCounts = new long[MAX_BUCKETS];
+         for (int i = 0; i < used; i++) {
+            if (counts[s][i] == 0) {
+               continue;
+            }
+            int j = (i + offset) / 2;
+            if (max && newCounts[j] > 0) {
+               newSums[j] = Math.max(newSums[j], sums[s][i]);
+            } else if (max) {
+               newSums[j] = sums[s][i];
+            } else {
+               newSums[j] += sums[s][i];
+            }
+            newCounts[j] += counts[s][i];
+         }
+         sums[s] = newSums;
+         counts[s] = newCounts;
+      }
+      origin = newOrigin;
+      width = newWidth;
+      used = newUsed;
+   }
+
+   private static long floor(long time, long width) {
+      long remainder = time % width;
+      return remainder < 0 ? time - remainder - width : time - remainder;
+   }
+
+   /**
+    * @return Whether no sample was counted.
+    */
+   public boolean isEmpty() {
+      return used == 0;
+   }
+
+   public boolean contains(Series series) {
+      return sums[series.ordinal()] != null;
+   }
+
+   /**
+    * @return Start of the first bucket in ms since the epoch.
+    */
+   public long getStart() {
+      return origin;
+   }
+
+   public long getBucketMillis() {
+      return width;
+   }
+
+   public int getBucketCount() {
+      return used;
+   }
+
+   /**
+    * @param bucket Index of the bucket, from 0 to {@link #getBucketCount()} excluded.
+    * @return The value of the series in the bucket, or NaN if it has no value there.
+    */
+   public double getValue(Series series, int bucket) {
+      int s = series.ordinal();
+      if (sums[s] == null) {
+         return Double.NaN;
+      }
+      if (series.aggregation == Aggregation.RATE) {
+         return counts[s][bucket] * 1000.0 / width;
+      }
+      if (counts[s][bucket] == 0) {
+         return Double.NaN;
+      }
+      switch (series.aggregation) {
+         case MEAN:
+            return sums[s][bucket] / counts[s][bucket];
+         case TIME_SHARE:
+            return Math.min(100.0, sums[s][bucket] * 100.0 / width);
+         default:
+            return sums[s][bucket];
+      }
+   }
+}
@@ -0,0 +1,96 @@
+package hudson.plugins.grinder;
+
+/**
+ * Model class representing the load one Grinder worker process generated, and how evenly its
+ * threads performed.
+ */
+public class WorkerStats {
+   private final String name;
+   private final int threads;
+   private final long testCount;
+   private final long errorCount;
+   private final double tps;
+   private final double meanTime;
+   private final double threadMeanTimeCov;
+   private final int slowThreads;
+   private final int slowestThread;
+   private final double slowestThreadMeanTime;
+   private boolean outlier;
+
+   public WorkerStats(String name, int threads, long testCount, long errorCount, double tps, double meanTime,
+                      double threadMeanTimeCov, int slowThreads, int slowestThread, double slowestThreadMeanTime) {
+      this.name = name;
+      this.threads = threads;
+      this.testCount = testCount;
+      this.errorCount = errorCount;
+      this.tps = SkewReport.round(tps);
+      this.meanTime = SkewReport.round(meanTime);
+      this.threadMeanTimeCov = SkewReport.round(threadMeanTimeCov);
+      this.slowThreads = slowThreads;
+      this.slowestThread = slowestThread;
+      this.slowestThreadMeanTime = SkewReport.round(slowestThreadMeanTime);
+   }
+
+   public String getName() {
+      return name;
+   }
+
+   public int getThreads() {
+      return threads;
+   }
+
+   /**
+    * @return Number of successful tests run by the worker.
+    */
+   public long getTestCount() {
+      return testCount;
+   }
+
+   public long getErrorCount() {
+      return errorCount;
+   }
+
+   /**
+    * @return Successful tests per second, over the time the worker was running tests.
+    */
+   public double getTps() {
+      return tps;
+   }
+
+   public double getMeanTime() {
+      return meanTime;
+   }
+
+   /**
+    * @return Coefficient of variation of the mean test time of the threads of the worker.
+    */
+   public double getThreadMeanTimeCov() {
+      return threadMeanTimeCov;
+   }
+
+   /**
+    * @return Number of threads much slower than the typical thread of the worker.
+    */
+   public int getSlowThreads() {
+      return slowThreads;
+   }
+
+   public int getSlowestThread() {
+      return slowestThread;
+   }
+
+   public double getSlowestThreadMeanTime() {
+      return slowestThreadMeanTime;
+   }
+
+   /**
+    * @return Whether the TPS or mean test time of the worker is far off the typical worker.
+    */
+   public boolean isOutlier() {
+      return outlier;
+   }
+
+   void setOutlier(boolean outlier) {
+      this.outlier = outlier;
+   }
+}
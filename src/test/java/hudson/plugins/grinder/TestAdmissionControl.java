@@ -0,0 +1,151 @@
+package hudson.plugins.grinder;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ * Test class for the limits on concurrent Grinder result processing.
+ */
+public class TestAdmissionControl extends TestCase {
+   private static final long MB = 1024 * 1024;
+   private static final long TIMEOUT_MILLIS = 5000;
+
+   private final PrintStream logger = new PrintStream(new ByteArrayOutputStream());
+
+   /**
+    * Publish acquiring its permit in the background.
+    */
+   private class Publish extends Thread {
+      private final AdmissionControl control;
+      private final long bytes;
+      private volatile AdmissionControl.Permit permit;
+
+      Publish(AdmissionControl control, long bytes) {
+         this.control = control;
+         this.bytes = bytes;
+         setDaemon(true);
+         start();
+      }
+
+      @Override
+      public void run() {
+         try {
+            permit = control.acquire(bytes, logger);
+         } catch (InterruptedException e) {
+            // left the queue
+         }
+      }
+
+      boolean isAdmitted() throws InterruptedException {
+         join(100);
+         return permit != null;
+      }
+
+      AdmissionControl.Permit awaitPermit() throws InterruptedException {
+         join(TIMEOUT_MILLIS);
+         assertNotNull("Publish not admitted", permit);
+         return permit;
+      }
+   }
+
+   private void awaitWaiting(AdmissionControl control, int waiting) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+      while (control.getWaiting() != waiting) {
+         assertTrue("Expected " + waiting + " waiting", System.currentTimeMillis() < deadline);
+         Thread.sleep(10);
+      }
+   }
+
+   public void testSlotLimit() throws Exception {
+      AdmissionControl control = new AdmissionControl(2, 100);
+      AdmissionControl.Permit first = control.acquire(MB, logger);
+      AdmissionControl.Permit second = control.acquire(MB, logger);
+      assertEquals(2, control.getRunning());
+
+      Publish third = new Publish(control, MB);
+      awaitWaiting(control, 1);
+      assertFalse(third.isAdmitted());
+
+      first.release();
+      third.awaitPermit();
+      assertEquals(2, control.getRunning());
+      assertEquals(0, control.getWaiting());
+      second.release();
+      third.permit.release();
+      assertEquals(0, control.getRunning());
+      assertEquals(3, control.getAdmitted());
+   }
+
+   public void testMemoryClamp() throws Exception {
+      AdmissionControl control = new AdmissionControl(4, 1);
+
+      // larger than the whole budget: admitted, but alone
+      AdmissionControl.Permit large = control.acquire(10 * MB, logger);
+      Publish small = new Publish(control, 1);
+      awaitWaiting(control, 1);
+      assertFalse(small.isAdmitted());
+
+      large.release();
+      small.awaitPermit().release();
+      assertEquals(0, control.getRunning());
+   }
+
+   public void testFifo() throws Exception {
+      AdmissionControl control = new AdmissionControl(2, 1);
+      AdmissionControl.Permit held = control.acquire(MB / 2, logger);
+
+      Publish large = new Publish(control, MB);
+      awaitWaiting(control, 1);
+      // fits in the remaining memory, but has to wait behind the large publish
+      Publish small = new Publish(control, MB / 4);
+      awaitWaiting(control, 2);
+      assertFalse(small.isAdmitted());
+
+      held.release();
+      large.awaitPermit();
+      assertFalse(small.isAdmitted());
+
+      large.permit.release();
+      small.awaitPermit().release();
+      assertEquals(0, control.getRunning());
+      assertEquals(0, control.getWaiting());
+   }
+
+   public void testRelease() throws Exception {
+      AdmissionControl control = new AdmissionControl(1, 100);
+      AdmissionControl.Permit permit = control.acquire(MB, logger);
+      permit.release();
+      permit.release();
+      assertEquals(0, control.getRunning());
+
+      control.acquire(MB, logger);
+      // a second release of the first permit must not free the slot again
+      permit.release();
+      Publish next = new Publish(control, MB);
+      awaitWaiting(control, 1);
+      assertFalse(next.isAdmitted());
+      next.interrupt();
+      awaitWaiting(control, 0);
+   }
+
+   public void testResize() throws Exception {
+      AdmissionControl control = new AdmissionControl(2, 100);
+      AdmissionControl.Permit first = control.acquire(MB, logger);
+      AdmissionControl.Permit second = control.acquire(MB, logger);
+
+      control.resize(1, 100);
+      Publish third = new Publish(control, MB);
+      awaitWaiting(control, 1);
+      first.release();
+      assertFalse(third.isAdmitted());
+
+      control.resize(2, 100);
+      third.awaitPermit();
+      assertEquals(2, control.getRunning());
+      assertEquals(3, control.getAdmitted());
+      second.release();
+      third.permit.release();
+   }
+}
@@ -0,0 +1,122 @@
+package hudson.plugins.grinder;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test class for the rows of the Grinder dashboard and their cache.
+ */
+public class TestDashboardCache extends TestCase {
+
+
+   public void testDelta() throws Exception {
+      List<BuildSummary> summaries = Arrays.asList(
+         TestGrinderIndex.createSummary(5, false, 50.0, 40.0),
+         TestGrinderIndex.createSummary(4, true, 110.0, 20.0),
+         TestGrinderIndex.createSummary(3, false, 70.0, 30.0),
+         TestGrinderIndex.createSummary(2, true, 100.0, 25.0),
+         TestGrinderIndex.createSummary(1, true, 90.0, 30.0));
+
+      // the latest build is compared to the stable build before it
+      JobSummary job = new JobSummary("job", "Job", "job/job/", summaries);
+      assertEquals(5, job.getBuildNumber());
+      assertFalse(job.isSuccessful());
+      assertEquals(4, job.getPreviousBuildNumber());
+      assertEquals(-54.5, job.getTpsDelta(), 0.001);
+      assertEquals(100.0, job.getMeanTimeDelta(), 0.001);
+
+      job = new JobSummary("job", "Job", "job/job/", summaries.subList(1, 5));
+      assertEquals(2, job.getPreviousBuildNumber());
+      assertEquals(10.0, job.getTpsDelta(), 0.001);
+      assertEquals(-20.0, job.getMeanTimeDelta(), 0.001);
+   }
+
+   public void testNoDelta() throws Exception {
+      JobSummary job = new JobSummary("job", "Job", "job/job/",
+         Arrays.asList(TestGrinderIndex.createSummary(2, true, 100.0, 25.0),
+            TestGrinderIndex.createSummary(1, false, 90.0, 30.0)));
+      assertEquals(0, job.getPreviousBuildNumber());
+      assertNull(job.getTpsDelta());
+      assertNull(job.getMeanTimeDelta());
+
+      // a previous value of 0 gives no percentage
+      job = new JobSummary("job", "Job", "job/job/",
+         Arrays.asList(TestGrinderIndex.createSummary(2, true, 100.0, 25.0),
+            TestGrinderIndex.createSummary(1, true, 0.0, 30.0)));
+      assertEquals(1, job.getPreviousBuildNumber());
+      assertNull(job.getTpsDelta());
+      assertEquals(-16.7, job.getMeanTimeDelta(), 0.001);
+   }
+
+   public void testSparkline() throws Exception {
+      List<BuildSummary> summaries = Arrays.asList(
+         TestGrinderIndex.createSummary(5, false, 50.0, 40.0),
+         TestGrinderIndex.createSummary(4, true, 110.0, 20.0),
+         TestGrinderIndex.createSummary(3, false, 70.0, 30.0),
+         TestGrinderIndex.createSummary(2, true, 100.0, 25.0),
+         TestGrinderIndex.createSummary(1, true, 90.0, 30.0));
+
+      // only stable builds, oldest first, scaled to the height
+      JobSummary job = new JobSummary("job", "Job", "job/job/", summaries);
+      assertEquals(3, job.getSparkline().length);
+      assertEquals(90.0, job.getSparkline()[0], 0.001);
+      assertEquals(110.0, job.getSparkline()[2], 0.001);
+      assertEquals("0.0,19.0 50.0,10.0 100.0,1.0", job.getSparklinePoints());
+
+      // a flat trend is drawn in the middle
+      job = new JobSummary("job", "Job", "job/job/",
+         Arrays.asList(TestGrinderIndex.createSummary(2, true, 100.0, 25.0),
+            TestGrinderIndex.createSummary(1, true, 100.0, 25.0)));
+      assertEquals("0.0,10.0 100.0,10.0", job.getSparklinePoints());
+
+      job = new JobSummary("job", "Job", "job/job/",
+         Collections.singletonList(TestGrinderIndex.createSummary(1, true, 100.0, 25.0)));
+      assertEquals("", job.getSparklinePoints());
+   }
+
+   public void testSparklineLimit() throws Exception {
+      List<BuildSummary> summaries = new ArrayList<BuildSummary>();
+      for (int i = 30; i >= 1; i--) {
+         summaries.add(TestGrinderIndex.createSummary(i, true, i, 10.0));
+      }
+      JobSummary job = new JobSummary("job", "Job", "job/job/", summaries);
+      assertEquals(JobSummary.SPARKLINE_BUILDS, job.getSparkline().length);
+      assertEquals(11.0, job.getSparkline()[0], 0.001);
+      assertEquals(30.0, job.getSparkline()[JobSummary.SPARKLINE_BUILDS - 1], 0.001);
+   }
+
+   public void testUpdateRemove() throws Exception {
+      DashboardCache cache = new DashboardCache();
+      cache.update("b", "B", "job/b/", Collections.singletonList(TestGrinderIndex.createSummary(1, true, 10.0, 5.0)));
+      cache.update("A", "A", "job/A/", Collections.singletonList(TestGrinderIndex.createSummary(3, true, 20.0, 5.0)));
+      cache.update("c", "C", "job/c/", Collections.singletonList(TestGrinderIndex.createSummary(2, true, 30.0, 5.0)));
+
+      // sorted by name, ignoring case
+      List<JobSummary> jobs = cache.getJobs();
+      assertEquals(3, jobs.size());
+      assertEquals("A", jobs.get(0).getFullName());
+      assertEquals("b", jobs.get(1).getFullName());
+      assertEquals("c", jobs.get(2).getFullName());
+
+      // an update replaces the row
+      cache.update("b", "B", "job/b/",
+         Arrays.asList(TestGrinderIndex.createSummary(2, true, 12.0, 5.0),
+            TestGrinderIndex.createSummary(1, true, 10.0, 5.0)));
+      jobs = cache.getJobs();
+      assertEquals(3, jobs.size());
+      assertEquals(2, jobs.get(1).getBuildNumber());
+      assertEquals(20.0, jobs.get(1).getTpsDelta(), 0.001);
+
+      // a job without indexed builds has no row
+      cache.update("c", "C", "job/c/", Collections.<BuildSummary>emptyList());
+      cache.remove("A");
+      cache.remove("unknown");
+      jobs = cache.getJobs();
+      assertEquals(1, jobs.size());
+      assertEquals("b", jobs.get(0).getFullName());
+   }
+}
@@ -0,0 +1,154 @@
+package hudson.plugins.grinder;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test class for the Grinder data log reader.
+ */
+public class TestDataLogReader extends TestCase {
+
+   public void testLatencies() throws Exception {
+      InputStream is = getClass().getResourceAsStream("/data_1.log");
+
+      DataLogReader reader = new DataLogReader(System.out);
+      reader.read(is);
+      Map<String, LatencyHistogram> latencies = reader.getLatencies();
+
+      assertEquals(200, reader.getSamples());
+      assertEquals(0, reader.getSkipped());
+      assertEquals(3, latencies.size());
+
+      LatencyHistogram test1 = latencies.get("Test 1");
+      assertEquals(100, test1.getCount());
+      assertPercentile(149.5, test1.getPercentile(50));
+      assertPercentile(199, test1.getPercentile(100));
+      assertPercentile(100, test1.getPercentile(0));
+
+      LatencyHistogram test2 = latencies.get("Test 2");
+      assertEquals(99, test2.getCount());
+      assertPercentile(498, test2.getPercentile(99));
+
+      assertEquals(199, latencies.get("Totals").getCount());
+   }
+
+   public void testMergeAndRemove() throws Exception {
+      LatencyHistogram.Accumulator fast = new LatencyHistogram.Accumulator();
+      LatencyHistogram.Accumulator slow = new LatencyHistogram.Accumulator();
+      for (int i = 1; i <= 1000; i++) {
+         fast.record(i);
+         slow.record(10000 + i);
+      }
+
+      LatencyHistogram.Accumulator window = new LatencyHistogram.Accumulator();
+      window.add(fast.toHistogram());
+      window.add(slow.toHistogram());
+      assertEquals(2000, window.getCount());
+      assertPercentile(500, window.getPercentile(25));
+      assertPercentile(10990, window.getPercentile(99));
+
+      window.remove(fast.toHistogram());
+      assertEquals(1000, window.getCount());
+      assertPercentile(10500, window.getPercentile(50));
+   }
+
+   public void testWorkerSkew() throws Exception {
+      DataLogReader reader = new DataLogReader(System.out);
+      reader.read(getClass().getResourceAsStream("/data_1.log"), "agent1-0");
+      reader.read(getClass().getResourceAsStream("/data_1.log"), "agent2-0");
+      reader.read(new ByteArrayInputStream(slowWorkerLog().getBytes()), "agent3-0");
+
+      SkewReport report = reader.getSkewReport();
+      List<WorkerStats> workers = report.getWorkers();
+      assertEquals(3, workers.size());
+
+      WorkerStats first = workers.get(0);
+      assertEquals("agent1-0", first.getName());
+      assertEquals(5, first.getThreads());
+      assertEquals(199, first.getTestCount());
+      assertEquals(1, first.getErrorCount());
+      assertEquals(10.18, first.getTps(), 0.01);
+      assertEquals(298.92, first.getMeanTime(), 0.01);
+      assertEquals(0, first.getSlowThreads());
+      assertFalse(first.isOutlier());
+
+      WorkerStats slow = workers.get(2);
+      assertEquals("agent3-0", slow.getName());
+      assertEquals(1000, slow.getThreads());
+      assertEquals(2000, slow.getTestCount());
+      assertEquals(1, slow.getSlowThreads());
+      assertEquals(999, slow.getSlowestThread());
+      assertEquals(5000.0, slow.getSlowestThreadMeanTime(), 0.01);
+      assertTrue(slow.isOutlier());
+
+      assertTrue(report.getMeanTimeCov() > 0.5);
+   }
+
+   private String slowWorkerLog() {
+      StringBuilder log = new StringBuilder("Thread, Run, Test, Start time (ms since Epoch), Test time, Errors\n");
+      for (int thread = 0; thread < 1000; thread++) {
+         for (int run = 0; run < 2; run++) {
+            int time = thread == 999 ? 5000 : 800;
+            log.append(thread).append(", ").append(run).append(", 1, ").append(1262112675000L + run * 10000)
+               .append(", ").append(time).append(", 0\n");
+         }
+      }
+      return log.toString();
+   }
+
+   public void testTimeline() throws Exception {
+      DataLogReader reader = new DataLogReader(System.out);
+      reader.read(getClass().getResourceAsStream("/data_1.log"));
+      Timeline timeline = reader.getTimeline();
+
+      assertEquals(1262112675000L, timeline.getStart());
+      assertEquals(1000, timeline.getBucketMillis());
+      assertEquals(20, timeline.getBucketCount());
+      assertEquals(10.0, timeline.getValue(Timeline.Series.TPS, 0), 0.001);
+      assertEquals(252.0, timeline.getValue(Timeline.Series.MEAN_TIME, 0), 0.001);
+      assertEquals(9.0, timeline.getValue(Timeline.Series.TPS, 3), 0.001);
+      assertFalse(timeline.contains(Timeline.Series.CPU_USER));
+   }
+
+   public void testNoTimelineForRelativeStartTimes() throws Exception {
+      String log = "Thread, Run, Test, Milliseconds since start, Test time, Errors\n"
+         + "0, 0, 1, 100, 10, 0\n";
+
+      DataLogReader reader = new DataLogReader(System.out);
+      reader.read(new ByteArrayInputStream(log.getBytes()));
+
+      assertEquals(1, reader.getSamples());
+      assertTrue(reader.getTimeline().isEmpty());
+   }
+
+   public void testSkipsMalformedLines() throws Exception {
+      String log = "Thread, Run, Test, Start time (ms since Epoch), Test time, Errors\n"
+         + "0, 0, 1, 1262112675000, 10, 0\n"
+         + "Thread, Run, Test, Start time (ms since Epoch), Test time, Errors\n"
+         + "0, 1, 1, 1262112675100\n"
+         + "0, 2, 1, 1262112675200, 12, 0\n";
+
+      DataLogReader reader = new DataLogReader(System.out);
+      reader.read(new ByteArrayInputStream(log.getBytes()));
+
+      assertEquals(2, reader.getSamples());
+      assertEquals(2, reader.getSkipped());
+   }
+
+   public void testUnexpectedHeader() throws Exception {
+      try {
+         new DataLogReader(System.out).read(new ByteArrayInputStream("foo, bar\n".getBytes()));
+         fail();
+      } catch (GrinderParseException e) {
+         assertEquals("Unexpected data log header: foo, bar", e.getMessage());
+      }
+   }
+
+   private void assertPercentile(double expected, double actual) {
+      assertEquals(expected, actual, expected * LatencyHistogram.RELATIVE_ERROR);
+   }
+}
@@ -0,0 +1,77 @@
+package hudson.plugins.grinder;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Test class for the Grinder error log reader.
+ */
+public class TestErrorLogReader extends TestCase {
+
+   public void testErrorSignatures() throws Exception {
+      InputStream is = getClass().getResourceAsStream("/error_1.log");
+
+      ErrorLogReader reader = new ErrorLogReader(System.out);
+      reader.read(is);
+      List<ErrorCause> causes = reader.getErrorCauses();
+
+      assertEquals(7, reader.getErrorCount());
+      assertEquals(8, causes.size());
+
+      assertCause(causes.get(0), "Totals", 3, "http://localhost:#/store/order.html -> # Internal Server Error, # bytes [HTTP 500]");
+      assertCause(causes.get(1), "Totals", 2, "java.net.ConnectException < java.net.PlainSocketImpl.socketConnect < java.net.PlainSocketImpl.doConnect < java.net.PlainSocketImpl.connectToAddress");
+      assertCause(causes.get(2), "Totals", 1, "Aborted run due to timeout waiting for '...'");
+      assertCause(causes.get(4), "Test 301", 3, "http://localhost:#/store/order.html -> # Internal Server Error, # bytes [HTTP 500]");
+      assertCause(causes.get(5), "Test 101", 2, "java.net.ConnectException < java.net.PlainSocketImpl.socketConnect < java.net.PlainSocketImpl.doConnect < java.net.PlainSocketImpl.connectToAddress");
+      assertCause(causes.get(6), "Other", 1, "Aborted run due to timeout waiting for '...'");
+   }
+
+   public void testJythonFrames() throws Exception {
+      ErrorLogReader reader = new ErrorLogReader(System.out);
+      reader.read(getClass().getResourceAsStream("/error_1.log"));
+
+      boolean found = false;
+      for (ErrorCause cause : reader.getErrorCauses()) {
+         if (cause.getTestId().equals("Test 201")) {
+            assertEquals("IndexError < petstore.py:__call__ < petstore.py:page2", cause.getSignature());
+            found = true;
+         }
+      }
+      assertTrue(found);
+   }
+
+   public void testMemoryIsBounded() throws Exception {
+      StringBuilder log = new StringBuilder();
+      for (int i = 0; i < 5000; i++) {
+         log.append("(thread 0 run ").append(i).append(" test 1): Aborted run due to Jython exception: ");
+         log.append(i % 2 == 0 ? "java.io.IOException" : "Failure" + (char) ('A' + i % 26) + "Exception" + i / 26).append('\n');
+      }
+
+      ErrorLogReader reader = new ErrorLogReader(System.out);
+      reader.read(new ByteArrayInputStream(log.toString().getBytes()));
+      List<ErrorCause> causes = reader.getErrorCauses();
+
+      assertEquals(5000, reader.getErrorCount());
+      assertEquals(2 * ErrorLogReader.TOP_CAUSES, causes.size());
+      assertEquals("java.io.IOException", causes.get(0).getSignature());
+      assertTrue(causes.get(0).getCount() >= 2500);
+   }
+
+   public void testNullInput() throws Exception {
+      try {
+         new ErrorLogReader(System.out).read(null);
+         fail();
+      } catch (GrinderParseException e) {
+         assertEquals("Empty input stream", e.getMessage());
+      }
+   }
+
+   private void assertCause(ErrorCause cause, String testId, long count, String signature) {
+      assertEquals(testId, cause.getTestId());
+      assertEquals(count, cause.getCount());
+      assertEquals(signature, cause.getSignature());
+   }
+}
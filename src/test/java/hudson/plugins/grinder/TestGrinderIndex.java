@@ -0,0 +1,108 @@
+package hudson.plugins.grinder;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Test class for the per-project index of Grinder results and the summaries stored in it.
+ */
+public class TestGrinderIndex extends TestCase {
+   private File dir;
+
+   @Override
+   protected void setUp() throws Exception {
+      dir = File.createTempFile("grinder-index", "");
+      assertTrue(dir.delete());
+      assertTrue(dir.mkdir());
+   }
+
+   @Override
+   protected void tearDown() throws Exception {
+      for (File file : dir.listFiles()) {
+         file.delete();
+      }
+      dir.delete();
+   }
+
+   /**
+    * Summary of a build with two tests, also used by the dashboard tests.
+    */
+   static BuildSummary createSummary(int number, boolean successful, double tps, double meanTime) {
+      LatencyHistogram.Accumulator latencies = new LatencyHistogram.Accumulator();
+      latencies.record(10);
+      latencies.record(20);
+      return new BuildSummary(number, "id-" + number, 1000L * number, successful,
+         new Test(Test.TOTALS, 100, 1, meanTime, 5.0, tps, Test.TOTALS),
+         Arrays.asList(new Test("Test 1", 60, 1, 10.0, 2.0, tps / 2, "Home"), new Test("Test 2", 40, 0, 22.5, 4.0, tps / 2, null)),
+         latencies.toHistogram());
+   }
+
+   public void testPutRemove() throws Exception {
+      GrinderIndex index = GrinderIndex.load(new File(dir, GrinderIndex.FILE_NAME));
+      assertNull(index.getLatest());
+      assertTrue(index.getSummaries().isEmpty());
+      assertFalse(index.isMigrated());
+
+      index.put(createSummary(2, true, 20.0, 15.0));
+      index.put(createSummary(1, true, 10.0, 15.0));
+      index.put(createSummary(3, false, 30.0, 15.0));
+      assertEquals(3, index.getLatest().getNumber());
+      assertEquals(3, index.getSummaries().size());
+      assertEquals(3, index.getSummaries().get(0).getNumber());
+      assertEquals(1, index.getSummaries().get(2).getNumber());
+      assertTrue(index.contains(2));
+
+      // a build indexed again replaces the previous summary
+      index.put(createSummary(3, true, 31.0, 15.0));
+      assertEquals(3, index.getSummaries().size());
+      assertTrue(index.getLatest().isSuccessful());
+
+      index.remove(3);
+      assertEquals(2, index.getLatest().getNumber());
+      index.remove(4);
+      assertEquals(2, index.getSummaries().size());
+      assertFalse(index.contains(3));
+   }
+
+   public void testSaveLoad() throws Exception {
+      File file = new File(dir, GrinderIndex.FILE_NAME);
+      GrinderIndex index = GrinderIndex.load(file);
+      index.put(createSummary(1, true, 10.0, 15.0));
+      index.put(new BuildSummary(2, "id-2", 2000L, false, new Test(Test.TOTALS, 0, 0, 0.0, 0.0, 0.0, Test.TOTALS),
+         Collections.<Test>emptyList(), null));
+      index.setMigrated(true);
+      index.save();
+      assertTrue(file.exists());
+
+      GrinderIndex loaded = GrinderIndex.load(file);
+      assertTrue(loaded.isMigrated());
+      assertEquals(2, loaded.getSummaries().size());
+      BuildSummary latest = loaded.getLatest();
+      assertEquals(2, latest.getNumber());
+      assertEquals(2000L, latest.getTimestamp());
+      assertFalse(latest.isSuccessful());
+      assertNull(latest.getTotalLatencies());
+      assertEquals(0, latest.getTestIds().length);
+
+      BuildSummary first = loaded.getSummaries().get(1);
+      assertTrue(first.isSuccessful());
+      assertEquals(10.0, first.getTotals().getTps().doubleValue(), 0.001);
+      assertEquals(15.0, first.getTotals().getMeanTime().doubleValue(), 0.001);
+      assertEquals(2, first.getTotalLatencies().getCount());
+      assertEquals(Arrays.asList("Test 1", "Test 2"), Arrays.asList(first.getTestIds()));
+      assertEquals(22.5, first.getMeanTimes()[1], 0.001);
+      assertEquals(5.0, first.getTps()[0], 0.001);
+
+      GrinderIndex.delete(dir);
+      assertFalse(file.exists());
+   }
+
+   public void testLoadMissing() throws Exception {
+      GrinderIndex index = GrinderIndex.load(new File(dir, GrinderIndex.FILE_NAME));
+      assertTrue(index.getSummaries().isEmpty());
+      assertFalse(index.isMigrated());
+   }
+}
@@ -3,6 +3,7 @@ package hudson.plugins.grinder;
 import junit.framework.TestCase;
 
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -123,6 +124,42 @@ public class TestGrinderResultReader extends TestCase {
 	   
    }
    
+   public void testCustomStatisticsColumns() throws Exception {
+      InputStream is = getClass().getResourceAsStream("/out_custom_stats.log");
+
+      ResultReader rr = new ResultReader(is, System.out);
+      List<Test> tests = rr.getTests();
+
+      assertNotNull(tests);
+      assertEquals(2, tests.size());
+
+      assertTest(tests.get(0), "Test 1", 10, 0, 120.5, 30.25, 2048.0, 0.0, 0, 1.0, 2.0, 80.0, "Login");
+      assertTest(tests.get(1), "Test 2", 20, 1, 300.0, 50.0, 1024.0, 5120.0, 1, 0.0, 0.0, 200.0, "Search  catalogue");
+      assertEquals(5.0, tests.get(1).getTps());
+      assertEquals(Arrays.asList("Peak TPS", "Mean sleep time (ms)"), tests.get(1).getExtraMetrics());
+      assertEquals(7.0, tests.get(1).getValue("Peak TPS"));
+      assertEquals(0.0, tests.get(0).getValue("Mean sleep time (ms)"));
+
+      Test totals = rr.getTotals();
+      assertTest(totals, "Totals", 30, 1, 240.5, 80.1, 1365.33, 0.0, 1, 0.33, 0.67, 160.0, "");
+      assertEquals(7.5, totals.getTps());
+      assertEquals(10.0, totals.getValue("Mean sleep time (ms)"));
+   }
+
+   public void testStandardColumnsHaveNoExtraMetrics() throws Exception {
+      InputStream is = getClass().getResourceAsStream("/out_Selenium1-0.log");
+
+      ResultReader rr = new ResultReader(is, System.out);
+
+      assertTrue(rr.getTotals().getExtraMetrics().isEmpty());
+      assertEquals(2.67, rr.getTotals().getTps());
+   }
+
+   public void testReadProcessName() throws Exception {
+      assertEquals("asdf-0", ResultReader.readProcessName(getClass().getResourceAsStream("/out_1.log"), 100));
+      assertNull(ResultReader.readProcessName(getClass().getResourceAsStream("/out_1.log"), 0));
+   }
+
    private void assertTest(
       Test test,
       String id,
@@ -0,0 +1,118 @@
+package hudson.plugins.grinder;
+
+import junit.framework.TestCase;
+
+import java.util.TimeZone;
+
+/**
+ * Test class for the resource log reader and the timeline it fills.
+ */
+public class TestResourceLogReader extends TestCase {
+   private TimeZone defaultTimeZone;
+
+   @Override
+   protected void setUp() throws Exception {
+      defaultTimeZone = TimeZone.getDefault();
+      TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+   }
+
+   @Override
+   protected void tearDown() throws Exception {
+      TimeZone.setDefault(defaultTimeZone);
+   }
+
+   public void testSar() throws Exception {
+      Timeline timeline = new Timeline();
+      ResourceLogReader reader = new ResourceLogReader(System.out, timeline);
+
+      assertEquals(8, reader.read(getClass().getResourceAsStream("/sar_1.txt")));
+
+      assertEquals(1705363190000L, timeline.getStart());
+      assertEquals(11, timeline.getBucketCount());
+      assertEquals(10.0, timeline.getValue(Timeline.Series.CPU_USER, 0), 0.001);
+      assertEquals(5.0, timeline.getValue(Timeline.Series.CPU_SYSTEM, 0), 0.001);
+      assertEquals(1.0, timeline.getValue(Timeline.Series.CPU_IOWAIT, 0), 0.001);
+      assertEquals(75.0, timeline.getValue(Timeline.Series.MEMORY_USED, 0), 0.001);
+      assertTrue(Double.isNaN(timeline.getValue(Timeline.Series.CPU_USER, 5)));
+      // midnight rolls over to the next day
+      assertEquals(30.0, timeline.getValue(Timeline.Series.CPU_USER, 10), 0.001);
+      assertEquals(80.0, timeline.getValue(Timeline.Series.MEMORY_USED, 10), 0.001);
+   }
+
+   public void testVmstat() throws Exception {
+      Timeline timeline = new Timeline();
+      ResourceLogReader reader = new ResourceLogReader(System.out, timeline);
+
+      assertEquals(6, reader.read(getClass().getResourceAsStream("/vmstat_1.txt")));
+
+      assertEquals(1705320001000L, timeline.getStart());
+      assertEquals(2, timeline.getBucketCount());
+      assertEquals(40.0, timeline.getValue(Timeline.Series.CPU_USER, 0), 0.001);
+      assertEquals(15.0, timeline.getValue(Timeline.Series.CPU_SYSTEM, 1), 0.001);
+      assertEquals(5.0, timeline.getValue(Timeline.Series.CPU_IOWAIT, 1), 0.001);
+      assertFalse(timeline.contains(Timeline.Series.MEMORY_USED));
+   }
+
+   public void testJava8GcLog() throws Exception {
+      Timeline timeline = new Timeline();
+      ResourceLogReader reader = new ResourceLogReader(System.out, timeline);
+
+      assertEquals(3, reader.read(getClass().getResourceAsStream("/gc_1.log")));
+
+      assertEquals(1705320001000L, timeline.getStart());
+      assertEquals(4, timeline.getBucketCount());
+      assertEquals(32.0, timeline.getValue(Timeline.Series.GC_TIME, 0), 0.001);
+      assertEquals(300.0, timeline.getValue(Timeline.Series.GC_MAX_PAUSE, 0), 0.001);
+      assertEquals(1.0, timeline.getValue(Timeline.Series.GC_TIME, 3), 0.001);
+   }
+
+   public void testUnifiedGcLog() throws Exception {
+      Timeline timeline = new Timeline();
+      ResourceLogReader reader = new ResourceLogReader(System.out, timeline);
+
+      assertEquals(2, reader.read(getClass().getResourceAsStream("/gc_2.log")));
+
+      assertEquals(5.123, timeline.getValue(Timeline.Series.GC_MAX_PAUSE, 0), 0.001);
+      assertEquals(2.0, timeline.getValue(Timeline.Series.GC_MAX_PAUSE, 1), 0.001);
+   }
+
+   public void testLimitToRecordedRange() throws Exception {
+      Timeline timeline = new Timeline();
+      timeline.add(Timeline.Series.TPS, 1705320001000L, 0);
+      timeline.limitToRecordedRange(1000);
+
+      ResourceLogReader reader = new ResourceLogReader(System.out, timeline);
+      reader.read(getClass().getResourceAsStream("/sar_1.txt"));
+      reader.read(getClass().getResourceAsStream("/vmstat_1.txt"));
+
+      assertEquals(1705320001000L, timeline.getStart());
+      assertEquals(2, timeline.getBucketCount());
+      assertEquals(60.0, timeline.getValue(Timeline.Series.CPU_USER, 1), 0.001);
+      assertFalse(timeline.contains(Timeline.Series.MEMORY_USED));
+   }
+
+   public void testTimelineStaysBounded() throws Exception {
+      Timeline timeline = new Timeline();
+      for (int second = 0; second < 1000; second++) {
+         timeline.add(Timeline.Series.TPS, second * 1000L, 0);
+         timeline.add(Timeline.Series.GC_MAX_PAUSE, second * 1000L, second);
+      }
+
+      assertEquals(0, timeline.getStart());
+      assertEquals(8000, timeline.getBucketMillis());
+      assertEquals(125, timeline.getBucketCount());
+      assertEquals(1.0, timeline.getValue(Timeline.Series.TPS, 0), 0.001);
+      assertEquals(7.0, timeline.getValue(Timeline.Series.GC_MAX_PAUSE, 0), 0.001);
+      assertEquals(999.0, timeline.getValue(Timeline.Series.GC_MAX_PAUSE, 124), 0.001);
+
+      timeline.add(Timeline.Series.TPS, -10000, 0);
+      assertEquals(-16000, timeline.getStart());
+      assertEquals(127, timeline.getBucketCount());
+      assertEquals(1.0, timeline.getValue(Timeline.Series.TPS, 2), 0.001);
+
+      timeline.add(Timeline.Series.TPS, -1000000, 0);
+      assertTrue(timeline.getBucketCount() <= Timeline.MAX_BUCKETS);
+      assertEquals(-1008000, timeline.getStart());
+      assertEquals(16000, timeline.getBucketMillis());
+   }
+}
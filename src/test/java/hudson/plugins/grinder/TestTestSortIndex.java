@@ -0,0 +1,101 @@
+package hudson.plugins.grinder;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test class for the sort index and the paging of the build report test table.
+ */
+public class TestTestSortIndex extends TestCase {
+
+   private List<Test> createTests(int count) {
+      List<Test> tests = new ArrayList<Test>();
+      for (int i = 1; i <= count; i++) {
+         // mean time highest for the middle test
+         double meanTime = count - Math.abs(count / 2 - i);
+         tests.add(new Test("Test " + i, 100 * i, i % 3, meanTime, 1.0, 10.0, i % 2 == 0 ? "Even page " + i : "Odd page " + i));
+      }
+      return tests;
+   }
+
+   public void testOrders() throws Exception {
+      List<Test> tests = createTests(12);
+      Collections.reverse(tests);
+      TestSortIndex index = new TestSortIndex(tests, Collections.<String>emptyList());
+
+      assertEquals(12, index.getTestCount());
+      int[] byId = index.getOrder(TestSortIndex.ID);
+      assertEquals("Test 1", tests.get(byId[0]).getId());
+      assertEquals("Test 2", tests.get(byId[1]).getId());
+      assertEquals("Test 12", tests.get(byId[11]).getId());
+
+      int[] byMeanTime = index.getOrder(Test.MEAN_TEST_TIME);
+      assertEquals("Test 6", tests.get(byMeanTime[11]).getId());
+
+      // ties keep the report order
+      int[] byTps = index.getOrder(Test.TPS);
+      assertEquals("Test 12", tests.get(byTps[0]).getId());
+
+      assertNull(index.getOrder("Unknown"));
+      assertNull(index.getOrder(null));
+   }
+
+   public void testPages() throws Exception {
+      List<Test> tests = createTests(120);
+      TestSortIndex index = new TestSortIndex(tests, Collections.<String>emptyList());
+
+      TestPage page = new TestPage(tests, index, Test.TEST_COUNT, true, null, 2, 50);
+      assertEquals(50, page.getTests().size());
+      assertEquals("Test 70", page.getTests().get(0).getId());
+      assertEquals(51, page.getFirst());
+      assertEquals(100, page.getLast());
+      assertEquals(120, page.getMatchCount());
+      assertEquals(3, page.getPageCount());
+      assertEquals("?sort=Test+Count&order=asc&size=50&page=1", page.getSortUrl(Test.TEST_COUNT));
+      assertEquals("?sort=TPS&order=asc&size=50&page=1", page.getSortUrl(Test.TPS));
+      assertEquals("?sort=Test+Count&order=desc&size=50&page=3", page.getPageUrl(3));
+
+      // parameters of the chart are kept in the links of the table
+      page.keepParameter("top", "10");
+      page.keepParameter("metric", Test.MEAN_TEST_TIME);
+      page.keepParameter("unset", null);
+      assertEquals("?top=10&metric=Mean+Test+Time&sort=Test+Count&order=desc&size=50&page=3", page.getPageUrl(3));
+
+      page = new TestPage(tests, index, "Unknown", true, null, 9, 50);
+      assertNull(page.getSort());
+      assertFalse(page.isDescending());
+      assertEquals(3, page.getPage());
+      assertEquals(20, page.getTests().size());
+      assertEquals("Test 101", page.getTests().get(0).getId());
+
+      page = new TestPage(tests, index, null, false, null, 1, 100000);
+      assertEquals(TestPage.MAX_SIZE, page.getSize());
+      assertEquals(120, page.getTests().size());
+   }
+
+   public void testFilter() throws Exception {
+      List<Test> tests = createTests(120);
+      TestSortIndex index = new TestSortIndex(tests, Collections.<String>emptyList());
+
+      TestPage page = new TestPage(tests, index, TestSortIndex.ID, false, " even ", 2, 25);
+      assertEquals("even", page.getFilter());
+      assertEquals(60, page.getMatchCount());
+      assertEquals(25, page.getTests().size());
+      assertEquals("Test 52", page.getTests().get(0).getId());
+      assertEquals("?sort=ID&order=asc&filter=even&size=25&page=3", page.getPageUrl(3));
+
+      page = new TestPage(tests, index, TestSortIndex.ID, false, "Test 11", 5, 25);
+      assertEquals(11, page.getMatchCount());
+      assertEquals(1, page.getPage());
+      assertEquals("Test 11", page.getTests().get(0).getId());
+      assertEquals("Test 119", page.getTests().get(10).getId());
+
+      page = new TestPage(tests, index, null, false, "nothing", 1, 25);
+      assertEquals(0, page.getMatchCount());
+      assertEquals(0, page.getFirst());
+      assertEquals(1, page.getPageCount());
+   }
+}